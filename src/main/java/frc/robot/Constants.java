@@ -61,6 +61,9 @@ public class Constants {
 
         public static final int swerveMotorCurrentLimit = 20;
 
+        // Pose history kept for matching camera frames to the pose they were taken at.
+        public static final double poseHistorySeconds = 1.0;
+
         public static final double driveMotorGearBoxRatio = 1 / 6.12;
         public static final double turnMotorGearBoxRatio = 12.8;
 
@@ -132,6 +135,47 @@ public class Constants {
 
         public static final String limelightName = "limelight-ramen";
 
+        // Center speaker tags, red then blue.
+        public static final ArrayList<Double> speakerTagIDs = new ArrayList<Double>(
+                Arrays.asList(4.0, 7.0));
+
+        // Limelight 3 field of view, for converting tx and ty to crop coordinates.
+        public static final double horizontalFovDegrees = 62.5;
+        public static final double verticalFovDegrees = 48.9;
+
+        /**
+         * Constants for switching Limelight pipelines with what the robot is doing.
+         */
+        public static class PipelineConstants {
+            // High resolution, multi-tag pipeline for seeing the field while driving.
+            public static final int localizationPipeline = 0;
+            // Low resolution, high frame rate, single-tag pipeline for aiming.
+            public static final int aimingPipeline = 1;
+
+            // Resend the pipeline request if the camera has not switched in this time.
+            public static final double switchTimeoutSeconds = 0.25;
+            public static final double fpsWindowSeconds = 1.0;
+        }
+
+        /**
+         * Constants for tracking the target with the Limelight crop window.
+         */
+        public static class CropConstants {
+            // Crop half-size as a multiple of the tag's apparent half-size, plus a fixed margin,
+            // in normalized crop coordinates where the full frame spans -1 to 1.
+            public static final double tagSizeMultiple = 2;
+            public static final double minHalfSize = 0.1;
+            // How far ahead of the current frame to predict the target, past the pipeline latency.
+            public static final double lookaheadSeconds = 0.02;
+
+            // After this many loops without a target the window grows by the factor each loop.
+            public static final int lostLoopsBeforeWidening = 3;
+            public static final double wideningFactor = 1.5;
+
+            // Skip resending a window that moved less than this.
+            public static final double resendThreshold = 0.02;
+        }
+
         public static final ArrayList<Double> targetedIDList = new ArrayList<Double>(
                 Arrays.asList(
                         1.0,
@@ -162,13 +206,21 @@ public class Constants {
         public static class SetAxisConstants {
             public static final double errorMarginXY = 0.05;
             public static final double errorMarginRot = 0.02;
-            public static final double percentPower = 1;
+            public static final double errorMarginVelocity = 0.1;
 
-            public static final double translationPID_P = 1;
+            // Limits for the straight-line translation profile and the heading profile.
+            public static final double maxVelocityMetersPerSecond = 3;
+            public static final double maxAccelerationMetersPerSecondSquared = 3;
+            public static final double maxAngularVelocity = Math.PI * 2;
+            public static final double maxAngularAcceleration = Math.PI * 4;
+
+            // Correction on top of the profile feedforward; meters per second per meter of error.
+            public static final double translationPID_P = 2;
             public static final double translationPid_I = 0;
             public static final double translationPID_D = 0;
 
-            public static final double rotationPID_P = 0.03;
+            // Radians per second per radian of heading error.
+            public static final double rotationPID_P = 4;
             public static final double rotationPID_I = 0;
             public static final double rotationPID_D = 0;
             public static final double timeLimit = 8.0;
@@ -189,29 +241,84 @@ public class Constants {
 
         }
 
+        /**
+         * Constants for the shooter idle policy that pre-spins the flywheels near the speaker.
+         */
+        public static class ShooterIdleConstants {
+            // Inside this distance to the speaker, spin up to the full shooting speed.
+            public static final double fullSpinDistanceMeters = 3.5;
+            // Inside this distance, hold a partial speed so the final spin-up is short.
+            public static final double partialSpinDistanceMeters = 6;
+            public static final double partialSpinFraction = 0.5;
+
+            // Power budget for idling. Never idle faster than this fraction of the shooting
+            // speed, and do not idle at all when the battery sags below the minimum voltage.
+            public static final double maxIdleFraction = 1;
+            public static final double minBatteryVoltage = 11;
+        }
+
+        /**
+         * Constants for the pipelined score sequence.
+         */
+        public static class ScoreSequenceConstants {
+            // The pull-back ends once the note clears the reflectometer, or after this long if
+            // the reflectometer did not see the note to begin with or never clears.
+            public static final double pullBackTime = 0.2;
+            public static final double pullBackSpeed = 0.2;
+            public static final double maxTime = 4;
+        }
+
         public static class IntakeReleaseConstants {
             public static final double maxTime = 0.35;
         }
 
+        /**
+         * Constants for the D-pad snap-to-angle heading in teleop.
+         */
+        public static class SnapToAngleConstants {
+            // Radians per second per radian of heading error, on top of the profile.
+            public static final double rotationPID_P = 3;
+            public static final double rotationPID_I = 0;
+            public static final double rotationPID_D = 0;
+        }
+
+        /**
+         * Constants for driving with the heading locked onto the speaker.
+         */
+        public static class AimLockConstants {
+            // Radians per second per radian of heading error, on top of the profile.
+            public static final double rotationPID_P = 4;
+            public static final double rotationPID_I = 0;
+            public static final double rotationPID_D = 0.1;
+        }
+
+        /**
+         * Constants for aligning to a distance in front of an AprilTag.
+         */
         public static class VisionAutoAlignConstants {
-            public static final double errorMarginDistanceX = 0.08;
-            public static final double errorMarginDistanceY = 0.04;
-            public static final double errorMarginRot = 2;
-            public static final double percentPower = 1;
+            public static final double errorMarginDistance = 0.05;
+            public static final double errorMarginRot = 0.03;
+            public static final double errorMarginVelocity = 0.1;
 
             public static final double timeLimit = 12.0;
 
             public static final double targetDistanceMeters = 2;
 
-            public static final double translationXPID_P = 0.5;
-            public static final double translationXPID_I = 0;
-            public static final double translationXPID_D = 0;
+            // Frames older than this are ignored; the last goal is tracked with odometry.
+            public static final double maxFrameAgeSeconds = 0.1;
 
-            public static final double translationYPID_P = 0.45;
-            public static final double translationYPID_I = 0;
-            public static final double translationYPID_D = 0;
+            public static final double maxVelocityMetersPerSecond = 2;
+            public static final double maxAccelerationMetersPerSecondSquared = 2.5;
+            public static final double maxAngularVelocity = Math.PI * 2;
+            public static final double maxAngularAcceleration = Math.PI * 4;
 
-            public static final double rotationPID_P = 1 / 1000;
+            // Meters per second per meter of error, on top of the profile.
+            public static final double translationPID_P = 2;
+            public static final double translationPID_I = 0;
+            public static final double translationPID_D = 0;
+
+            // Radians per second per radian of heading error, on top of the profile.
+            public static final double rotationPID_P = 4;
             public static final double rotationPID_I = 0;
             public static final double rotationPID_D = 0;
         }
@@ -224,6 +331,15 @@ public class Constants {
         public static final double maxOutputPercent = 1;
         public static final double shooterSpeed = 1;
 
+        // Closed-loop flywheel velocity, in motor RPM. A NEO's free speed is about 5676 RPM.
+        public static final double shooterTargetRPM = 5000;
+        public static final double atSpeedToleranceRPM = 150;
+
+        // SparkMax onboard velocity PID. FF is in percent output per RPM.
+        public static final double velocityPID_P = 0.0002;
+        public static final double velocityPID_I = 0;
+        public static final double velocityPID_D = 0;
+        public static final double velocityPID_FF = 1.0 / 5676;
     }
 
     public static class ArmConstants {
@@ -244,6 +360,9 @@ public class Constants {
         public static final double armAngleOffsetHorizontal = 0;// Offset bewteen sensor to
                                                                 // horizontal axis of arm in
                                                                 // degrees
+        // Elevation of the shooter above horizontal with the arm stowed at SetArmConstants.armMin.
+        // The reported angle falls as the arm raises. Estimate; measure on the robot.
+        public static final double stowedElevationRadians = 0.3;
 
         public static final double armSpeedFast = 1;
         public static final double maxOutputPercent = 0.4;
@@ -254,13 +373,31 @@ public class Constants {
         public static final int intakeMotorLeftID = 20;
         public static final int intakeMotorRightID = 21;
         public static final int reflectChannel = 4;
+        // The reflectometer pulls its output low when it sees the note.
+        public static final boolean reflectometerActiveLow = true;
+        public static final double noteDebounceSeconds = 0.02;
+
+        // Current-signature note detection, sampled faster than the robot loop.
+        public static final double currentSamplePeriodSeconds = 0.005;
+        public static final int currentStatusFramePeriodMs = 5;
+        // SparkMax default, restored while the rollers are not pulling a note in.
+        public static final int defaultStatusFramePeriodMs = 20;
+        public static final double noteCurrentSpikeAmps = 8;
+        public static final double noteVelocityDropFraction = 0.2;
+        public static final double noteDetectSpinUpSeconds = 0.25;
+        // 30 ms of spike and slowdown together at the sample period, longer than a note glancing
+        // off the rollers holds them.
+        public static final int noteDetectConfirmSamples = 6;
+        public static final double noteDetectBaselineAlpha = 0.05;
         public static final double intakeSpeed = 0.1;
         public static final double maxOutputPercent = 0.4;
     }
 
     public static class RevConstants {
-        public static final double revTime = 0.35;
-        public static final double maxTime = 0.6;
+        // If the flywheels are still not at speed after this long, feed the note anyway.
+        public static final double revTime = 0.8;
+        // How long the intake keeps feeding once the note has been released to the shooter.
+        public static final double feedTime = 0.25;
     }
 
     public static class TestConstants {
@@ -283,6 +420,209 @@ public class Constants {
         public static final double maxOutputPercent = 0.3;
     }
 
+    /**
+     * Field positions in WPILib blue-origin coordinates, meters.
+     */
+    public static class FieldConstants {
+        public static final double fieldLengthMeters = 16.54;
+        public static final double fieldWidthMeters = 8.21;
+
+        public static final double blueSpeakerX = 0.0;
+        public static final double redSpeakerX = fieldLengthMeters;
+        public static final double speakerY = 5.55;
+
+        // Blue alliance scoring and pickup poses; red poses are mirrored across the field.
+        public static final double ampX = 1.84;
+        public static final double ampY = 7.6;
+        public static final double ampRotationDegrees = 90;
+        public static final double speakerFrontX = 1.4;
+        public static final double speakerFrontRotationDegrees = 180;
+        public static final double sourceX = 15.4;
+        public static final double sourceY = 1.0;
+        public static final double sourceRotationDegrees = -60;
+
+        // Blue alliance headings that face each stage chain. Left and right are as seen from the
+        // blue driver station; the center chain is on the far side, towards the center line.
+        public static final double stageLeftRotationDegrees = -60;
+        public static final double stageRightRotationDegrees = 60;
+        public static final double stageCenterRotationDegrees = 180;
+    }
+
+    /**
+     * Constants for on-the-fly pathfinding around the field navigation grid.
+     */
+    public static class PathfindingConstants {
+        public static final double maxVelocityMetersPerSecond = 2.5;
+        public static final double maxAccelerationMetersPerSecondSquared = 2.5;
+        public static final double maxAngularVelocityDegrees = 360;
+        public static final double maxAngularAccelerationDegrees = 540;
+
+        // Replan from the current pose when the estimate drifts this far from the path.
+        public static final double replanTotalErrorMeters = 1.0;
+        public static final double replanErrorSpikeMeters = 0.25;
+    }
+
+    /**
+     * Constants for build-time compiled trajectories and their follower.
+     */
+    public static class TrajectoryConstants {
+        public static final String compiledDirectory = "pathplanner/compiled";
+        public static final double compiledSamplePeriodSeconds = 0.02;
+        // Time to blend from where the robot actually starts onto the trajectory.
+        public static final double startBlendSeconds = 0.75;
+
+        // Same gains PathPlanner's holonomic follower uses by default.
+        public static final double translationPID_P = 5;
+        public static final double rotationPID_P = 5;
+    }
+
+    /**
+     * Constants for the disabled-mode JIT and class-loading warm-up.
+     */
+    public static class WarmUpConstants {
+        public static final boolean enabled = true;
+        // Warm-up work allowed per disabled loop, leaving the rest of the 20 ms loop free.
+        public static final double loopBudgetSeconds = 0.005;
+
+        // Enough calls for the hot paths to reach C2 compilation.
+        public static final int kinematicsIterations = 20000;
+        public static final int visionIterations = 5000;
+        public static final int commandIterations = 5000;
+        // Each path iteration generates a trajectory, so far fewer are needed.
+        public static final int pathFollowerIterations = 200;
+    }
+
+    /**
+     * Constants for the battery-aware current budget shared between mechanisms.
+     */
+    public static class PowerBudgetConstants {
+        public static final double updatePeriodSeconds = 0.1;
+        public static final double voltageFilterSeconds = 0.3;
+        public static final double currentFilterSeconds = 0.3;
+        // Spare current shrinks by however far the measured draw is over this share of the budget.
+        public static final double measuredHeadroomFraction = 0.85;
+
+        // The total budget falls linearly from nominal voltage to the brownout guard.
+        public static final double nominalVoltage = 12;
+        public static final double brownoutGuardVoltage = 8;
+        public static final double maxTotalCurrentAmps = 360;
+        public static final double minTotalCurrentAmps = 170;
+
+        // Limits and compensation are only rewritten when they move by at least this much.
+        public static final int limitHysteresisAmps = 2;
+        public static final double compensationHysteresisVolts = 0.25;
+        public static final double minCompensationVolts = 8;
+
+        // Per-motor limits, in priority order.
+        public static final int armMinAmps = 20;
+        public static final int armMaxAmps = 40;
+        public static final int swerveDriveMinAmps = 20;
+        public static final int swerveDriveMaxAmps = 50;
+        public static final int shooterMinAmps = 15;
+        public static final int shooterMaxAmps = 40;
+        public static final int intakeMinAmps = 15;
+        // Both intake motors are budgeted; the follower needs 40 A for the roller friction.
+        public static final int intakeMaxAmps = 40;
+        public static final int hookMinAmps = 10;
+        public static final int hookMaxAmps = 80;
+
+        public static final double armCompensationVolts = 12;
+        public static final double swerveCompensationVolts = 12;
+        // Slightly under nominal so flywheel speed holds as the battery sags.
+        public static final double shooterCompensationVolts = 11;
+        public static final double intakeCompensationVolts = 11;
+        public static final double hookCompensationVolts = 12;
+    }
+
+    /**
+     * Constants for swerve wheel-slip detection and traction control.
+     */
+    public static class TractionConstants {
+        // A wheel is slipping when its speed is off from the implied speed by more than both.
+        public static final double slipSpeedThresholdMetersPerSecond = 0.3;
+        public static final double slipRatio = 0.25;
+
+        // Drive output scale while slipping, and how fast it drops and recovers per loop.
+        public static final double minTractionScale = 0.5;
+        public static final double tractionScaleStep = 0.1;
+        public static final double tractionRecoveryStep = 0.05;
+    }
+
+    /**
+     * Constants for the tipping model that limits drive acceleration with the arm raised.
+     */
+    public static class TippingConstants {
+        // Estimates; measure these on the competition robot.
+        public static final double chassisMassKg = 50;
+        public static final double chassisCgHeightMeters = 0.15;
+        // Arm, shooter and intake, lumped at the shooter.
+        public static final double armMassKg = 10;
+        // Horizontal distance from the robot center to the wheel contact points.
+        public static final double wheelContactHalfWidthMeters = 0.27;
+        public static final double safetyFactor = 0.7;
+
+        // Above this the wheels slip before the robot can tip, so the drive is not limited.
+        public static final double unlimitedAccelerationMetersPerSecondSquared = 10;
+        // A drive command this long after the last one starts from the measured speed.
+        public static final double staleCommandSeconds = 0.1;
+    }
+
+    /**
+     * Constants for the NEO thermal model and current derating.
+     */
+    public static class ThermalConstants {
+        public static final double ambientC = 25;
+        // Winding to ambient, in degrees C per watt, and heat capacity in joules per degree C.
+        // Together they give a time constant of about a minute.
+        public static final double thermalResistance = 0.3;
+        public static final double heatCapacity = 200;
+        public static final double powerFilterSeconds = 1;
+        // Rate at which the estimate is pulled towards the SparkMax reading, per second.
+        public static final double measurementGain = 0.2;
+
+        public static final double limitC = 90;
+        public static final double derateStartC = 65;
+        public static final double minDerate = 0.4;
+        public static final double predictionHorizonSeconds = 10;
+        public static final double warnSecondsToLimit = 30;
+        public static final double maxReportedSeconds = 999;
+    }
+
+    /**
+     * Constants for the deduplicating motor output layer.
+     */
+    public static class MotorOutputConstants {
+        // Outputs closer than this to the last one sent are not resent.
+        public static final double epsilon = 1e-3;
+        // An unchanged output is still resent this often.
+        public static final double keepAliveSeconds = 0.1;
+    }
+
+    /**
+     * Constants for the real-time actuator control loop.
+     */
+    public static class ControlLoopConstants {
+        // The drive PID output changes every cycle, so each cycle costs a voltage frame per drive
+        // motor. 10 ms keeps that to twice the main loop's frame rate.
+        public static final double periodSeconds = 0.01;
+        // Above the main robot thread, below the HAL and CAN threads.
+        public static final int threadPriority = 40;
+        // One second of loops per published statistics window.
+        public static final int statsWindowLoops = 100;
+    }
+
+    /**
+     * Constants for the desktop physics simulation.
+     */
+    public static class SimConstants {
+        public static final double loopPeriodSeconds = 0.02;
+
+        public static final double driveMomentOfInertia = 0.025;
+        public static final double turnMomentOfInertia = 0.004;
+        public static final double armMassKg = 5;
+        public static final double flywheelMomentOfInertia = 0.002;
+    }
+
     public static class GrabChainConstants {
         public static final double hookSpeed = 0.2;
         public static final double swerveSpeed = 0.3;
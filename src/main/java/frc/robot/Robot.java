@@ -4,8 +4,11 @@
 
 package frc.robot;
 
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.util.MotorOutput;
 
 /**
  * Robot is timed, meaning that it will run the periodic methods at a fixed of 20ms.
@@ -13,17 +16,37 @@ import edu.wpi.first.wpilibj2.command.CommandScheduler;
 public class Robot extends TimedRobot {
     private RobotContainer m_robotContainer = new RobotContainer();
 
+    // FPGA time in microseconds at the start of the first enabled loop, or 0 once reported.
+    private long m_enableStartMicros = 0;
+
     @Override
     public void robotInit() {
+        m_robotContainer.preloadAutos();
     }
 
     @Override
     public void robotPeriodic() {
         CommandScheduler.getInstance().run();
+        m_robotContainer.getPowerBudget().update();
+        m_robotContainer.getControlLoop().publishStats();
+        MotorOutput.publishStats();
+
+        if (m_enableStartMicros != 0) {
+            SmartDashboard.putNumber("WarmUp/First Enabled Loop ms",
+                    (RobotController.getFPGATime() - m_enableStartMicros) / 1000.0);
+            SmartDashboard.putBoolean("WarmUp/Warm At Enable", m_robotContainer.isWarmedUp());
+            m_enableStartMicros = 0;
+        }
+    }
+
+    @Override
+    public void disabledPeriodic() {
+        m_robotContainer.runWarmUp();
     }
 
     @Override
     public void teleopInit() {
+        m_enableStartMicros = RobotController.getFPGATime();
         CommandScheduler.getInstance().cancelAll();
         m_robotContainer.bindCommands();
     }
@@ -34,6 +57,7 @@ public class Robot extends TimedRobot {
 
     @Override
     public void autonomousInit() {
+        m_enableStartMicros = RobotController.getFPGATime();
         m_robotContainer.scheduleAutonomousCommand();
     }
 
@@ -1,28 +1,62 @@
 package frc.robot;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pathplanner.lib.commands.FollowPathHolonomic;
+import com.pathplanner.lib.commands.PathfindHolonomic;
+import com.pathplanner.lib.path.PathConstraints;
 import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.pathfinding.LocalADStar;
+import com.pathplanner.lib.pathfinding.Pathfinding;
+import com.pathplanner.lib.util.GeometryUtil;
 import com.pathplanner.lib.util.HolonomicPathFollowerConfig;
 import com.pathplanner.lib.util.ReplanningConfig;
 
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.DeferredCommand;
 import edu.wpi.first.wpilibj2.command.ParallelCommandGroup;
 import edu.wpi.first.wpilibj2.command.WaitCommand;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.robot.Constants.ControlLoopConstants;
+import frc.robot.Constants.FieldConstants;
 import frc.robot.Constants.OperatorConstants;
+import frc.robot.Constants.PathfindingConstants;
+import frc.robot.Constants.PowerBudgetConstants;
 import frc.robot.Constants.PresetConstants;
 import frc.robot.Constants.ShooterConstants;
 import frc.robot.Constants.SwerveSystemConstants;
+import frc.robot.Constants.VisionConstants;
+import frc.robot.Constants.WarmUpConstants;
 import frc.robot.subsystems.ArmSystem;
 import frc.robot.subsystems.IntakeSystem;
 import frc.robot.subsystems.ShooterSystem;
+import frc.robot.commands.AimLockDriveCommand;
+import frc.robot.commands.FollowTrajectoryCommand;
 import frc.robot.commands.IntakeRevCommand;
+import frc.robot.commands.ScoreSequenceCommand;
+import frc.robot.commands.ShooterIdleCommand;
 import frc.robot.commands.SetArmToAngleCommand;
+import frc.robot.commands.SetAxisCommand;
 import frc.robot.commands.SetIntakeSpeedCommand;
 import frc.robot.commands.SetShooterSpeedCommand;
+import frc.robot.commands.VisionAutoAlignCommand;
 import frc.robot.subsystems.SwerveDriveSystem;
 import frc.robot.subsystems.VisionSystem;
 import frc.robot.util.AppliedController;
+import frc.robot.util.AutoRegistry;
+import frc.robot.util.ControlLoop;
+import frc.robot.util.Coords;
+import frc.robot.util.PowerBudget;
+import frc.robot.util.TippingModel;
+import frc.robot.util.WarmUpService;
+import java.util.List;
+import java.util.Set;
 
 /**
  * RobotContainer.
@@ -40,14 +74,167 @@ public class RobotContainer {
     private ArmSystem m_armSystem = new ArmSystem(m_armController);
     private IntakeSystem m_intakeSystem = new IntakeSystem();
 
+    private ControlLoop m_controlLoop = new ControlLoop("Control Loop",
+            ControlLoopConstants.periodSeconds, ControlLoopConstants.threadPriority,
+            ControlLoopConstants.statsWindowLoops);
+
+    private PowerBudget m_powerBudget = new PowerBudget();
+
+    private AutoRegistry m_autoRegistry = new AutoRegistry(this::followPath,
+            trajectory -> new FollowTrajectoryCommand(m_swerveDrive, trajectory));
+
+    private WarmUpService m_warmUpService = new WarmUpService(WarmUpConstants.loopBudgetSeconds);
+    private int m_warmUpCount = 0;
+    private PathPlannerPath m_warmUpPath;
+
+    private final PathConstraints m_pathfindingConstraints = new PathConstraints(
+            PathfindingConstants.maxVelocityMetersPerSecond,
+            PathfindingConstants.maxAccelerationMetersPerSecondSquared,
+            Units.degreesToRadians(PathfindingConstants.maxAngularVelocityDegrees),
+            Units.degreesToRadians(PathfindingConstants.maxAngularAccelerationDegrees));
+
     public RobotContainer() {
+        // AD* searches the deploy navgrid on its own thread, so planning never blocks the loop.
+        Pathfinding.setPathfinder(new LocalADStar());
+        m_shooterSystem.setDefaultCommand(
+                new ShooterIdleCommand(m_shooterSystem, m_swerveDrive::getPoseMeters,
+                        m_intakeSystem::hasNote));
+        // Ease off drive acceleration as the raised arm lifts the center of gravity.
+        m_swerveDrive.setMaxAccelerationSupplier(
+                () -> TippingModel.getMaxAcceleration(m_armSystem.getArmHeight()));
+        // Robot motion lets the camera crop window lead the target.
+        m_visionSystem.setRobotSpeedsSupplier(m_swerveDrive::getSpeeds);
         initShuffleBoard();
+        initWarmUp();
+
+        // Actuator setpoints are applied here, away from scheduler and telemetry jitter.
+        m_controlLoop.addTask(m_swerveDrive::applyModuleSetpoints);
+        m_controlLoop.addTask(m_armSystem::runAngleControl);
+        m_controlLoop.start();
+        initPowerBudget();
+    }
+
+    /**
+     * Register the mechanisms with the power budget, highest priority first.
+     */
+    private void initPowerBudget() {
+        m_powerBudget.register("Arm", m_armSystem, 2,
+                PowerBudgetConstants.armMinAmps, PowerBudgetConstants.armMaxAmps,
+                PowerBudgetConstants.armCompensationVolts);
+        m_powerBudget.register("Swerve", m_swerveDrive, 4,
+                PowerBudgetConstants.swerveDriveMinAmps, PowerBudgetConstants.swerveDriveMaxAmps,
+                PowerBudgetConstants.swerveCompensationVolts);
+        m_powerBudget.register("Shooter", m_shooterSystem, 2,
+                PowerBudgetConstants.shooterMinAmps, PowerBudgetConstants.shooterMaxAmps,
+                PowerBudgetConstants.shooterCompensationVolts);
+        m_powerBudget.register("Intake", m_intakeSystem, 2,
+                PowerBudgetConstants.intakeMinAmps, PowerBudgetConstants.intakeMaxAmps,
+                PowerBudgetConstants.intakeCompensationVolts);
+    }
+
+    public PowerBudget getPowerBudget() {
+        return m_powerBudget;
+    }
+
+    public ControlLoop getControlLoop() {
+        return m_controlLoop;
+    }
+
+    /**
+     * Register the code paths the first enabled loops depend on, so they can be loaded and JIT
+     * compiled while disabled.
+     */
+    private void initWarmUp() {
+        if (!WarmUpConstants.enabled) {
+            return;
+        }
+
+        m_warmUpService.addTask("Swerve Kinematics", WarmUpConstants.kinematicsIterations, () -> {
+            double phase = m_warmUpCount++ * 0.01;
+            m_swerveDrive.setOutputSuppressed(true);
+            m_swerveDrive.drive(Math.sin(phase), Math.cos(phase), Math.sin(phase * 0.5));
+            m_swerveDrive.setOutputSuppressed(false);
+        });
+
+        // Parse a canned result when the camera has not published one, so the warm-up does not
+        // flood the console with JSON errors.
+        ObjectMapper mapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        m_warmUpService.addTask("Limelight JSON", WarmUpConstants.visionIterations, () -> {
+            if (LimelightHelpers.getJSONDump(VisionConstants.limelightName).isEmpty()) {
+                try {
+                    mapper.readValue("{\"Results\":{\"ts\":0,\"v\":0}}",
+                            LimelightHelpers.LimelightResults.class);
+                }
+                catch (Exception e) {
+                    return;
+                }
+            }
+            else {
+                LimelightHelpers.getLatestResults(VisionConstants.limelightName);
+            }
+        });
+
+        m_warmUpService.addTask("Command Construction", WarmUpConstants.commandIterations, () -> {
+            new SetArmToAngleCommand(m_armSystem, m_armSystem.getArmAngleRadians());
+            new SetAxisCommand(new Coords(0, 0, 0), m_swerveDrive);
+            new VisionAutoAlignCommand(m_swerveDrive, m_visionSystem);
+            new ScoreSequenceCommand(m_armSystem, m_shooterSystem, m_intakeSystem,
+                    m_armController, () -> 0);
+            new IntakeRevCommand(m_intakeSystem, m_shooterSystem, m_armController);
+        });
+
+        List<String> paths = AutoRegistry.listPathNames();
+        if (!paths.isEmpty()) {
+            m_warmUpService.addTask("Path Follower", WarmUpConstants.pathFollowerIterations,
+                    () -> {
+                        if (m_warmUpPath == null) {
+                            m_warmUpPath = PathPlannerPath.fromPathFile(paths.get(0));
+                        }
+                        Command follower = followPath(m_warmUpPath);
+                        m_swerveDrive.setOutputSuppressed(true);
+                        follower.initialize();
+                        follower.execute();
+                        follower.end(true);
+                        m_swerveDrive.setOutputSuppressed(false);
+                    });
+        }
+    }
+
+    /**
+     * Run part of the warm-up. Call from disabledPeriodic.
+     */
+    public void runWarmUp() {
+        m_warmUpService.run();
+    }
+
+    public boolean isWarmedUp() {
+        return m_warmUpService.isComplete();
     }
 
     public void scheduleAutonomousCommand() {
-        PathPlannerPath path = PathPlannerPath.fromPathFile("Example Path");
+        getAutonomousCommand().schedule();
+    }
+
+    /**
+     * Load and build every auto on a background thread, ahead of autonomous.
+     */
+    public void preloadAutos() {
+        m_autoRegistry.preload();
+    }
+
+    /**
+     * The selected autonomous command, already built by {@link #preloadAutos()}.
+     */
+    public Command getAutonomousCommand() {
+        return m_autoRegistry.getSelected();
+    }
 
-        new FollowPathHolonomic(
+    /**
+     * Build a command that follows the given path with the swerve drive.
+     */
+    public Command followPath(PathPlannerPath path) {
+        return new FollowPathHolonomic(
                 path,
                 m_swerveDrive::getPoseMeters,
                 m_swerveDrive::getSpeeds,
@@ -57,10 +244,40 @@ public class RobotContainer {
                         m_swerveDrive.getDriveBaseRadius(),
                         new ReplanningConfig()),
                 () -> false,
-                m_swerveDrive).schedule();
+                m_swerveDrive);
+    }
+
+    /**
+     * Build a command that plans a path around the field obstacles to the given blue alliance pose
+     * and follows it. The pose is mirrored for red when the command is scheduled, and the path is
+     * replanned from the current pose if the estimate drifts off it.
+     */
+    public Command pathfindTo(Pose2d bluePose) {
+        return new DeferredCommand(() -> {
+            boolean isRed = DriverStation.getAlliance().orElse(Alliance.Blue) == Alliance.Red;
+            return new PathfindHolonomic(
+                    isRed ? GeometryUtil.flipFieldPose(bluePose) : bluePose,
+                    m_pathfindingConstraints,
+                    0,
+                    m_swerveDrive::getPoseMeters,
+                    m_swerveDrive::getSpeeds,
+                    m_swerveDrive::driveFromChassisSpeeds,
+                    new HolonomicPathFollowerConfig(
+                            SwerveSystemConstants.maxSpeedMetersPerSecond,
+                            m_swerveDrive.getDriveBaseRadius(),
+                            new ReplanningConfig(true, true,
+                                    PathfindingConstants.replanTotalErrorMeters,
+                                    PathfindingConstants.replanErrorSpikeMeters)),
+                    0,
+                    m_swerveDrive);
+        }, Set.of(m_swerveDrive));
     }
 
     private void initShuffleBoard() {
+        Shuffleboard.getTab("Swerve").addDouble("Max Safe Acceleration",
+                () -> TippingModel.getMaxAcceleration(m_armSystem.getArmHeight()));
+        Shuffleboard.getTab("Auto").add("Auto Routine", m_autoRegistry.getChooser());
+        Shuffleboard.getTab("Auto").addBoolean("Autos Loaded", () -> m_autoRegistry.isReady());
         Shuffleboard.getTab("Arm")
                 .addDouble(
                         "Angle to Shoot",
@@ -88,22 +305,12 @@ public class RobotContainer {
                                 new IntakeRevCommand(m_intakeSystem, m_shooterSystem,
                                         m_armController)));
 
+        // Arm travel, pull-back and spin-up run together; the note is fed once all are ready.
         new Trigger(() -> m_armController.getBButton()).onTrue(
-                new SetArmToAngleCommand(m_armSystem, m_armSystem.getShootingAngle(
-                        m_visionSystem.getDistanceMetersY())
-                        + ShooterConstants.shootOffsetLimeLight).andThen(
-                                new WaitCommand(waitTime).andThen(
-                                        new ParallelCommandGroup(
-                                                new SetShooterSpeedCommand(m_shooterSystem,
-                                                        pullBackNoteTime,
-                                                        -pullBackNoteSpeed),
-                                                new SetIntakeSpeedCommand(m_intakeSystem,
-                                                        pullBackNoteTime,
-                                                        pullBackNoteSpeed))
-                                                .andThen(
-                                                        new IntakeRevCommand(m_intakeSystem,
-                                                                m_shooterSystem,
-                                                                m_armController)))));
+                new ScoreSequenceCommand(m_armSystem, m_shooterSystem, m_intakeSystem,
+                        m_armController,
+                        () -> m_armSystem.getShootingAngle(m_visionSystem.getDistanceMetersY())
+                                + ShooterConstants.shootOffsetLimeLight));
 
         // Amp Preset
         new Trigger(() -> m_armController.getXButton()).onTrue(
@@ -112,6 +319,41 @@ public class RobotContainer {
         // Sub-woofer Preset
         new Trigger(() -> m_armController.getYButton()).onTrue(
                 new SetArmToAngleCommand(m_armSystem, PresetConstants.speakerPresetAngleRadians));
+
+        // Drive to a scoring or pickup location while held; releasing hands back to the driver.
+        new Trigger(() -> m_driveController.getXButton()).whileTrue(
+                pathfindTo(new Pose2d(FieldConstants.ampX, FieldConstants.ampY,
+                        Rotation2d.fromDegrees(FieldConstants.ampRotationDegrees))));
+        new Trigger(() -> m_driveController.getYButton()).whileTrue(
+                pathfindTo(new Pose2d(FieldConstants.speakerFrontX, FieldConstants.speakerY,
+                        Rotation2d.fromDegrees(FieldConstants.speakerFrontRotationDegrees))));
+        new Trigger(() -> m_driveController.getBButton()).whileTrue(
+                pathfindTo(new Pose2d(FieldConstants.sourceX, FieldConstants.sourceY,
+                        Rotation2d.fromDegrees(FieldConstants.sourceRotationDegrees))));
+
+        // Keep driving while held, with the heading locked onto the speaker.
+        new Trigger(() -> m_driveController.getRightBumper()).whileTrue(
+                new AimLockDriveCommand(m_swerveDrive, m_visionSystem, m_driveController));
+    }
+
+    public SwerveDriveSystem getSwerveDrive() {
+        return m_swerveDrive;
+    }
+
+    public ArmSystem getArmSystem() {
+        return m_armSystem;
+    }
+
+    public ShooterSystem getShooterSystem() {
+        return m_shooterSystem;
+    }
+
+    public IntakeSystem getIntakeSystem() {
+        return m_intakeSystem;
+    }
+
+    public VisionSystem getVisionSystem() {
+        return m_visionSystem;
     }
 
     public void stopRobot() {
@@ -0,0 +1,86 @@
+package frc.robot.commands;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.CommandsConstants.AimLockConstants;
+import frc.robot.Constants.VisionConstants;
+import frc.robot.subsystems.SwerveDriveSystem;
+import frc.robot.subsystems.VisionSystem;
+import frc.robot.util.AppliedController;
+import frc.robot.util.HeadingController;
+
+/**
+ * Drive with the left stick as usual while the heading is held on the speaker. The heading goal
+ * comes from the camera when a speaker tag is in view, taken against the heading the robot had
+ * when the frame was captured, and from the odometry pose otherwise. The goal also carries the
+ * rate the bearing changes as the robot translates, so the heading keeps up while strafing.
+ */
+public class AimLockDriveCommand extends Command {
+    private SwerveDriveSystem m_swerveDrive;
+    private VisionSystem m_visionSystem;
+    private AppliedController m_controller;
+
+    private HeadingController m_headingController = new HeadingController(
+            AimLockConstants.rotationPID_P,
+            AimLockConstants.rotationPID_I,
+            AimLockConstants.rotationPID_D);
+
+    /**
+     * Constructor.
+     */
+    public AimLockDriveCommand(SwerveDriveSystem swerveDrive, VisionSystem visionSystem,
+            AppliedController controller) {
+        m_swerveDrive = swerveDrive;
+        m_visionSystem = visionSystem;
+        m_controller = controller;
+        addRequirements(m_swerveDrive);
+    }
+
+    @Override
+    public void initialize() {
+        m_headingController.reset(m_swerveDrive.getPoseMeters().getRotation(),
+                m_swerveDrive.getSpeeds().omegaRadiansPerSecond);
+        m_visionSystem.startAiming(VisionConstants.speakerTagIDs);
+    }
+
+    @Override
+    public void execute() {
+        Pose2d pose = m_swerveDrive.getPoseMeters();
+        Translation2d toSpeaker = ShooterIdleCommand.getSpeakerTranslation()
+                .minus(pose.getTranslation());
+        double distanceSquared = Math.max(toSpeaker.getNorm() * toSpeaker.getNorm(), 1e-6);
+
+        // Rate the bearing to the speaker turns at as the robot moves across it.
+        ChassisSpeeds fieldSpeeds = m_swerveDrive.getFieldSpeeds();
+        double bearingRate = (toSpeaker.getY() * fieldSpeeds.vxMetersPerSecond
+                - toSpeaker.getX() * fieldSpeeds.vyMetersPerSecond) / distanceSquared;
+
+        Rotation2d goal = toSpeaker.getAngle();
+        if (m_visionSystem.isSpeakerDetected() && m_visionSystem.isFrameValid()) {
+            goal = m_swerveDrive.getHeadingAt(m_visionSystem.getCaptureTimestamp())
+                    .plus(new Rotation2d(m_visionSystem.getTargetBearingRadians()));
+        }
+
+        double rot = m_headingController.calculate(pose.getRotation(), goal, bearingRate);
+
+        // Turns off field relative while pressed
+        m_swerveDrive.setFieldRelative(!m_controller.getLeftStickButton());
+
+        // Same joystick inversion as DriveSwerveCommand.
+        m_swerveDrive.drive(m_controller.getLeftX(), -m_controller.getLeftY(), rot);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return false;
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        m_swerveDrive.stopSystem();
+        m_visionSystem.stopAiming();
+    }
+}
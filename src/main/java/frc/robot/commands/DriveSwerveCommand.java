@@ -1,17 +1,35 @@
 package frc.robot.commands;
 
+import com.pathplanner.lib.util.GeometryUtil;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.CommandsConstants.SnapToAngleConstants;
+import frc.robot.Constants.FieldConstants;
 import frc.robot.subsystems.SwerveDriveSystem;
 import frc.robot.util.AppliedController;
+import frc.robot.util.HeadingController;
 
 /**
- * DriveSwerveCommand.
+ * DriveSwerveCommand. A D-pad press snaps the heading to a field target with a profiled turn
+ * at the drivetrain's angular limits; any right stick input takes rotation back immediately.
+ * Up faces the amp, down the source, left and right the stage side chains and either upper
+ * diagonal the stage center chain. The lower diagonals do nothing.
  */
 public class DriveSwerveCommand extends Command {
     private SwerveDriveSystem m_swerveDrive;
     private AppliedController m_controller;
     private boolean[] m_working = new boolean[4];
 
+    private HeadingController m_snapController = new HeadingController(
+            SnapToAngleConstants.rotationPID_P,
+            SnapToAngleConstants.rotationPID_I,
+            SnapToAngleConstants.rotationPID_D);
+    // Heading being snapped to, or null when the driver has rotation.
+    private Rotation2d m_snapHeading;
+
     /**
      * Constructor.
      */
@@ -21,9 +39,40 @@ public class DriveSwerveCommand extends Command {
         addRequirements(m_swerveDrive);
     }
 
+    /**
+     * Field heading for a D-pad direction on the current alliance, or null if the direction has
+     * no target.
+     */
+    public static Rotation2d getSnapHeading(int pov) {
+        double degrees;
+        switch (pov) {
+            case 0:
+                degrees = FieldConstants.ampRotationDegrees;
+                break;
+            case 90:
+                degrees = FieldConstants.stageRightRotationDegrees;
+                break;
+            case 180:
+                degrees = FieldConstants.sourceRotationDegrees;
+                break;
+            case 270:
+                degrees = FieldConstants.stageLeftRotationDegrees;
+                break;
+            case 45:
+            case 315:
+                degrees = FieldConstants.stageCenterRotationDegrees;
+                break;
+            default:
+                return null;
+        }
+        Rotation2d heading = Rotation2d.fromDegrees(degrees);
+        boolean isRed = DriverStation.getAlliance().orElse(Alliance.Blue) == Alliance.Red;
+        return isRed ? GeometryUtil.flipFieldRotation(heading) : heading;
+    }
+
     @Override
     public void initialize() {
-
+        m_snapHeading = null;
     }
 
     @Override
@@ -38,6 +87,23 @@ public class DriveSwerveCommand extends Command {
         double yspeed = m_controller.getLeftY();
         double rot = m_controller.getRightX();
 
+        // Snap headings are field headings, so they are held against the pose estimate.
+        Rotation2d heading = m_swerveDrive.getPoseMeters().getRotation();
+        Rotation2d target = getSnapHeading(m_controller.getPOV());
+        if (rot != 0) {
+            m_snapHeading = null;
+        }
+        else if (target != null) {
+            if (m_snapHeading == null) {
+                m_snapController.reset(heading, m_swerveDrive.getSpeeds().omegaRadiansPerSecond);
+            }
+            m_snapHeading = target;
+        }
+
+        if (m_snapHeading != null) {
+            rot = m_snapController.calculate(heading, m_snapHeading);
+        }
+
         // Turns off field relative while pressed
         m_swerveDrive.setFieldRelative(!m_controller.getLeftStickButton());
 
@@ -0,0 +1,90 @@
+package frc.robot.commands;
+
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.SwerveSystemConstants;
+import frc.robot.Constants.TrajectoryConstants;
+import frc.robot.subsystems.SwerveDriveSystem;
+import frc.robot.util.CompiledTrajectory;
+
+/**
+ * Follows a build-time compiled trajectory holonomically, using the trajectory velocity as
+ * feedforward plus proportional correction on position and heading.
+ *
+ * <p>
+ * Like the initial replanning of PathPlanner's follower, the robot does not have to start on the
+ * trajectory: the reference starts at the robot's actual position and blends onto the trajectory
+ * over {@link TrajectoryConstants#startBlendSeconds}, instead of the controller snapping to the
+ * start pose.
+ * </p>
+ */
+public class FollowTrajectoryCommand extends Command {
+    private SwerveDriveSystem m_swerveDrive;
+    private CompiledTrajectory m_trajectory;
+    private CompiledTrajectory.Sample m_sample = new CompiledTrajectory.Sample();
+    private Timer m_timer = new Timer();
+    private Translation2d m_startOffset = new Translation2d();
+
+    private PIDController m_translationXpid = new PIDController(
+            TrajectoryConstants.translationPID_P, 0, 0);
+    private PIDController m_translationYpid = new PIDController(
+            TrajectoryConstants.translationPID_P, 0, 0);
+    private PIDController m_rotationPid = new PIDController(
+            TrajectoryConstants.rotationPID_P, 0, 0);
+
+    /**
+     * Constructor.
+     */
+    public FollowTrajectoryCommand(SwerveDriveSystem swerveDrive, CompiledTrajectory trajectory) {
+        m_swerveDrive = swerveDrive;
+        m_trajectory = trajectory;
+        m_rotationPid.enableContinuousInput(-Math.PI, Math.PI);
+        addRequirements(m_swerveDrive);
+    }
+
+    @Override
+    public void initialize() {
+        m_trajectory.sample(0, m_sample);
+        m_startOffset = m_swerveDrive.getPoseMeters().getTranslation()
+                .minus(new Translation2d(m_sample.getX(), m_sample.getY()));
+        m_timer.restart();
+    }
+
+    @Override
+    public void execute() {
+        double time = m_timer.get();
+        m_trajectory.sample(time, m_sample);
+        Pose2d pose = m_swerveDrive.getPoseMeters();
+
+        // The start offset fades out linearly, so its rate is part of the feedforward.
+        double blend = Math.max(0, 1 - time / TrajectoryConstants.startBlendSeconds);
+        Translation2d offset = m_startOffset.times(blend);
+        Translation2d offsetRate = blend > 0
+                ? m_startOffset.div(-TrajectoryConstants.startBlendSeconds)
+                : new Translation2d();
+
+        double xspeed = m_sample.getVelocityX() + offsetRate.getX()
+                + m_translationXpid.calculate(pose.getX(), m_sample.getX() + offset.getX());
+        double yspeed = m_sample.getVelocityY() + offsetRate.getY()
+                + m_translationYpid.calculate(pose.getY(), m_sample.getY() + offset.getY());
+        double rotSpeed = m_rotationPid.calculate(
+                pose.getRotation().getRadians(),
+                m_sample.getRotation());
+
+        m_swerveDrive.drive(xspeed, yspeed, rotSpeed / SwerveSystemConstants.maxAngularSpeed,
+                true);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return m_timer.get() >= m_trajectory.getTotalTimeSeconds();
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        m_swerveDrive.stopSystem();
+    }
+}
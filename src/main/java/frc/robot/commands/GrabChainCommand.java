@@ -25,8 +25,8 @@ public class GrabChainCommand extends Command {
 
     @Override
     public void initialize() {
-
-        m_timer.start();
+        phase = 1;
+        m_timer.restart();
     }
 
     @Override
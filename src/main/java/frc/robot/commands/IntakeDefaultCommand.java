@@ -14,12 +14,18 @@ public class IntakeDefaultCommand extends Command {
 
     @Override
     public void initialize() {
-
+        m_intakeSystem.setStopOnNote(true);
     }
 
     @Override
     public void execute() {
-        m_intakeSystem.setIntakeSpeed(-IntakeConstants.intakeSpeed);
+        // The sensor interrupt stops the motors the moment a note arrives; this keeps them off.
+        if (m_intakeSystem.hasNote()) {
+            m_intakeSystem.stopSystem();
+        }
+        else {
+            m_intakeSystem.setIntakeSpeed(-IntakeConstants.intakeSpeed);
+        }
     }
 
     @Override
@@ -29,6 +35,7 @@ public class IntakeDefaultCommand extends Command {
 
     @Override
     public void end(boolean interrupted) {
+        m_intakeSystem.setStopOnNote(false);
         m_intakeSystem.stopSystem();
     }
 }
@@ -9,10 +9,15 @@ import frc.robot.subsystems.IntakeSystem;
 import frc.robot.subsystems.ShooterSystem;
 import frc.robot.util.AppliedController;
 
+/**
+ * Spins the flywheels up under velocity control and feeds the note once they are at speed.
+ */
 public class IntakeRevCommand extends Command {
     private ShooterSystem m_shooterSystem;
     private IntakeSystem m_intakeSystem;
     private Timer m_timer;
+    private Timer m_feedTimer;
+    private boolean m_feeding;
     private AppliedController m_controller;
 
     public IntakeRevCommand(
@@ -30,19 +35,29 @@ public class IntakeRevCommand extends Command {
     public void initialize() {
         m_timer = new Timer();
         m_timer.start();
+        m_feedTimer = new Timer();
+        m_feeding = false;
     }
 
     @Override
     public void execute() {
-        if (m_timer.get() >= RevConstants.revTime) {
+        m_shooterSystem.setShootVelocity(ShooterConstants.shooterTargetRPM);
+
+        // Feed as soon as the wheels are at speed. The rev time is only a fallback so a weak
+        // battery still gets a shot off.
+        if (!m_feeding
+                && (m_shooterSystem.isAtSpeed() || m_timer.get() >= RevConstants.revTime)) {
+            m_feeding = true;
+            m_feedTimer.start();
+        }
+        if (m_feeding) {
             m_intakeSystem.setIntakeSpeed(-IntakeConstants.intakeSpeed);
         }
-        m_shooterSystem.setShootSpeed(ShooterConstants.shooterSpeed);
     }
 
     @Override
     public boolean isFinished() {
-        if (m_timer.get() >= RevConstants.maxTime) {
+        if (m_feeding && m_feedTimer.get() >= RevConstants.feedTime) {
             return true;
         }
         if (m_controller.commandCancel()) {
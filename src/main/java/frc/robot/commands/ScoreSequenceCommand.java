@@ -0,0 +1,143 @@
+package frc.robot.commands;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.IntakeConstants;
+import frc.robot.Constants.RevConstants;
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.Constants.CommandsConstants.ScoreSequenceConstants;
+import frc.robot.Constants.CommandsConstants.SetArmConstants;
+import frc.robot.subsystems.ArmSystem;
+import frc.robot.subsystems.IntakeSystem;
+import frc.robot.subsystems.ShooterSystem;
+import frc.robot.util.AppliedController;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Moves the arm, pulls the note back and spins the flywheels up at the same time, then feeds the
+ * note once the arm is at angle and the flywheels are at speed. The pull-back stops as soon as the
+ * note backs off the reflectometer, with a fixed time as the fallback. Stage times are published
+ * under "Score" so we can see where the cycle time goes.
+ */
+public class ScoreSequenceCommand extends Command {
+    private ArmSystem m_armSystem;
+    private ShooterSystem m_shooterSystem;
+    private IntakeSystem m_intakeSystem;
+    private AppliedController m_controller;
+    private DoubleSupplier m_angleSupplier;
+
+    private Timer m_timer = new Timer();
+    private double m_desiredAngle;
+    // Whether the note was on the reflectometer when the sequence started.
+    private boolean m_noteAtSensor;
+
+    private double m_armReadyTime;
+    private double m_pullBackDoneTime;
+    private double m_atSpeedTime;
+    private double m_feedStartTime;
+
+    /**
+     * Constructor. The arm angle is read when the command starts.
+     */
+    public ScoreSequenceCommand(
+            ArmSystem armSystem,
+            ShooterSystem shooterSystem,
+            IntakeSystem intakeSystem,
+            AppliedController controller,
+            DoubleSupplier angleSupplier) {
+        m_armSystem = armSystem;
+        m_shooterSystem = shooterSystem;
+        m_intakeSystem = intakeSystem;
+        m_controller = controller;
+        m_angleSupplier = angleSupplier;
+        addRequirements(m_armSystem, m_shooterSystem, m_intakeSystem);
+    }
+
+    @Override
+    public void initialize() {
+        m_desiredAngle = m_angleSupplier.getAsDouble();
+        m_noteAtSensor = m_intakeSystem.isNoteAtSensor();
+        m_armReadyTime = Double.NaN;
+        m_pullBackDoneTime = Double.NaN;
+        m_atSpeedTime = Double.NaN;
+        m_feedStartTime = Double.NaN;
+        m_timer.restart();
+    }
+
+    private boolean isArmAtAngle() {
+        return MathUtil.applyDeadband(
+                m_armSystem.getArmAngleRadians() - m_desiredAngle,
+                SetArmConstants.errorMargin) == 0;
+    }
+
+    @Override
+    public void execute() {
+        double now = m_timer.get();
+
+        // The arm holds its setpoint for the whole sequence, including while feeding.
+        m_armSystem.setTargetAngle(m_desiredAngle);
+        if (Double.isNaN(m_armReadyTime)
+                && (isArmAtAngle() || now >= SetArmConstants.maxTime)) {
+            m_armReadyTime = now;
+        }
+
+        if (Double.isNaN(m_pullBackDoneTime)) {
+            boolean cleared = m_noteAtSensor && !m_intakeSystem.isNoteAtSensor();
+            if (!cleared && now < ScoreSequenceConstants.pullBackTime) {
+                m_shooterSystem.setShootSpeed(-ScoreSequenceConstants.pullBackSpeed);
+                m_intakeSystem.setIntakeSpeed(ScoreSequenceConstants.pullBackSpeed);
+                return;
+            }
+            m_pullBackDoneTime = now;
+        }
+
+        m_shooterSystem.setShootVelocity(ShooterConstants.shooterTargetRPM);
+        if (Double.isNaN(m_atSpeedTime)
+                && (m_shooterSystem.isAtSpeed()
+                        || now - m_pullBackDoneTime >= RevConstants.revTime)) {
+            m_atSpeedTime = now;
+        }
+
+        if (Double.isNaN(m_feedStartTime)
+                && !Double.isNaN(m_armReadyTime)
+                && !Double.isNaN(m_atSpeedTime)) {
+            m_feedStartTime = now;
+        }
+        if (Double.isNaN(m_feedStartTime)) {
+            m_intakeSystem.stopSystem();
+        }
+        else {
+            m_intakeSystem.setIntakeSpeed(-IntakeConstants.intakeSpeed);
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        if (!Double.isNaN(m_feedStartTime)
+                && m_timer.get() - m_feedStartTime >= RevConstants.feedTime) {
+            return true;
+        }
+        if (m_timer.get() >= ScoreSequenceConstants.maxTime) {
+            return true;
+        }
+        if (m_controller.commandCancel()) {
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        SmartDashboard.putNumber("Score/Arm Ready", m_armReadyTime);
+        SmartDashboard.putNumber("Score/Pull Back Done", m_pullBackDoneTime);
+        SmartDashboard.putNumber("Score/At Speed", m_atSpeedTime);
+        SmartDashboard.putNumber("Score/Feed Start", m_feedStartTime);
+        SmartDashboard.putNumber("Score/Total", m_timer.get());
+
+        m_armSystem.stopSystem();
+        m_shooterSystem.stopSystem();
+        m_intakeSystem.stopSystem();
+    }
+}
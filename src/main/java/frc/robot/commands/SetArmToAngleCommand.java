@@ -27,11 +27,11 @@ public class SetArmToAngleCommand extends Command {
         // SetArmConstants.PID_D);
         m_timer = new Timer();
         m_timer.start();
+        m_armSystem.setTargetAngle(m_desiredAngle);
     }
 
     @Override
     public void execute() {
-        m_armSystem.setArmSpeed(m_armSystem.getArmAngleRadians() - m_desiredAngle);
     }
 
     @Override
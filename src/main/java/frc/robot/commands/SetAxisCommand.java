@@ -1,7 +1,12 @@
 package frc.robot.commands;
 
-import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -10,101 +15,117 @@ import frc.robot.subsystems.SwerveDriveSystem;
 import frc.robot.util.Coords;
 
 /**
- * SetAxisCommand.
+ * Drives to a field pose along a straight line. Translation follows one trapezoid profile on the
+ * distance to the target, so X and Y arrive together, and heading follows its own profile. Both
+ * feed their profile velocity forward and correct the remaining error with P control.
  */
 public class SetAxisCommand extends Command {
     private SwerveDriveSystem m_swerveDrive;
-    private Timer m_timer;
+    private Timer m_timer = new Timer();
     private Coords m_coordinates;
+
+    private final TrapezoidProfile m_translationProfile = new TrapezoidProfile(
+            new TrapezoidProfile.Constraints(SetAxisConstants.maxVelocityMetersPerSecond,
+                    SetAxisConstants.maxAccelerationMetersPerSecondSquared));
+    private TrapezoidProfile.State m_translationStart = new TrapezoidProfile.State();
+    private TrapezoidProfile.State m_translationGoal = new TrapezoidProfile.State();
+    private Translation2d m_startTranslation = new Translation2d();
+    private Translation2d m_direction = new Translation2d();
+
     private PIDController m_translationXpid = new PIDController(SetAxisConstants.translationPID_P,
             SetAxisConstants.translationPid_I, SetAxisConstants.translationPID_D);
     private PIDController m_translationYpid = new PIDController(SetAxisConstants.translationPID_P,
             SetAxisConstants.translationPid_I, SetAxisConstants.translationPID_D);
-    private PIDController m_rotationPid = new PIDController(SetAxisConstants.rotationPID_P,
-            SetAxisConstants.rotationPID_I, SetAxisConstants.rotationPID_D);
+    private ProfiledPIDController m_rotationPid = new ProfiledPIDController(
+            SetAxisConstants.rotationPID_P, SetAxisConstants.rotationPID_I,
+            SetAxisConstants.rotationPID_D,
+            new TrapezoidProfile.Constraints(SetAxisConstants.maxAngularVelocity,
+                    SetAxisConstants.maxAngularAcceleration));
 
     /**
      * Constructor.
      */
     public SetAxisCommand(Coords coordinates, SwerveDriveSystem swerveDrive) {
-
         m_swerveDrive = swerveDrive;
         m_coordinates = coordinates;
-        m_timer = new Timer();
         addRequirements(m_swerveDrive);
 
-        m_rotationPid.enableContinuousInput(0, Math.PI * 2);
+        m_rotationPid.enableContinuousInput(-Math.PI, Math.PI);
     }
 
     @Override
     public void initialize() {
-        m_timer = new Timer();
-        m_timer.start();
+        Pose2d pose = m_swerveDrive.getPoseMeters();
+        ChassisSpeeds speeds = m_swerveDrive.getSpeeds();
+        Translation2d fieldVelocity = new Translation2d(
+                speeds.vxMetersPerSecond,
+                speeds.vyMetersPerSecond).rotateBy(pose.getRotation());
 
+        // Profile the distance along the line to the target, starting from the speed the robot
+        // already has in that direction.
+        Translation2d offset = getTargetTranslation().minus(pose.getTranslation());
+        double distance = offset.getNorm();
+        m_startTranslation = pose.getTranslation();
+        m_direction = distance > 1e-6 ? offset.div(distance) : new Translation2d();
+        double startVelocity = fieldVelocity.getX() * m_direction.getX()
+                + fieldVelocity.getY() * m_direction.getY();
+        m_translationStart = new TrapezoidProfile.State(0, startVelocity);
+        m_translationGoal = new TrapezoidProfile.State(distance, 0);
+
+        m_translationXpid.reset();
+        m_translationYpid.reset();
+        m_rotationPid.reset(pose.getRotation().getRadians(), speeds.omegaRadiansPerSecond);
+        m_timer.restart();
     }
 
     @Override
     public void execute() {
+        Pose2d pose = m_swerveDrive.getPoseMeters();
+        TrapezoidProfile.State setpoint = m_translationProfile.calculate(
+                m_timer.get(), m_translationStart, m_translationGoal);
+        Translation2d position = m_startTranslation.plus(m_direction.times(setpoint.position));
 
-        double xspeed = m_translationXpid.calculate(
-                m_swerveDrive.getxPosition(),
-                m_coordinates.getX());
-        double yspeed = m_translationYpid.calculate(
-                m_swerveDrive.getyPosition(),
-                m_coordinates.getY());
-        // xSpeed=MathUtil.clamp(xSpeed, -SetAxisConstants.percentPower,
-        // SetAxisConstants.percentPower);
-        // ySpeed=MathUtil.clamp(ySpeed, -SetAxisConstants.percentPower,
-        // SetAxisConstants.percentPower);
+        double xspeed = m_direction.getX() * setpoint.velocity
+                + m_translationXpid.calculate(pose.getX(), position.getX());
+        double yspeed = m_direction.getY() * setpoint.velocity
+                + m_translationYpid.calculate(pose.getY(), position.getY());
         double rotSpeed = m_rotationPid.calculate(
-                m_swerveDrive.getRotation2d().getRadians(),
-                m_coordinates.getRotation());
-        // rotSpeed=MathUtil.clamp(rotSpeed,-SetAxisConstants.percentPower,
-        // SetAxisConstants.percentPower);
-        // double xSpeed=m_coordinates.getX()-m_swerveDrive.getXPosition();
-        // double ySpeed=m_coordinates.getY()-m_swerveDrive.getYPosition();
-        // double
-        // rotSpeed=m_coordinates.getRotation()-m_swerveDrive.getAnglePositionAbsoluteRadians();
-
-        xspeed = MathUtil
-                .clamp(xspeed, -SetAxisConstants.percentPower, SetAxisConstants.percentPower);
-        yspeed = MathUtil
-                .clamp(yspeed, -SetAxisConstants.percentPower, SetAxisConstants.percentPower);
-        rotSpeed = MathUtil
-                .clamp(rotSpeed, -SetAxisConstants.percentPower, SetAxisConstants.percentPower);
+                pose.getRotation().getRadians(),
+                m_coordinates.getRotation())
+                + m_rotationPid.getSetpoint().velocity;
 
         SmartDashboard.putNumber("X Speed", xspeed);
         SmartDashboard.putNumber("Y Speed", yspeed);
         SmartDashboard.putNumber("Rot Speed", rotSpeed);
 
-        m_swerveDrive.drive(-xspeed, -yspeed, -rotSpeed);
+        m_swerveDrive.driveFromChassisSpeeds(ChassisSpeeds.fromFieldRelativeSpeeds(
+                xspeed, yspeed, rotSpeed, pose.getRotation()));
     }
 
     @Override
     public boolean isFinished() {
-        // $TODO - Can this be made more readable by breaking it up?
-        if (MathUtil.applyDeadband(
-                m_swerveDrive.getxPosition() - m_coordinates.getX(),
-                SetAxisConstants.errorMarginXY) == 0
-                && MathUtil.applyDeadband(
-                        m_swerveDrive.getyPosition() - m_coordinates.getY(),
-                        SetAxisConstants.errorMarginXY) == 0
-                && (MathUtil.applyDeadband(
-                        m_swerveDrive.getRotation2d().getRadians() - m_coordinates.getRotation(),
-                        SetAxisConstants.errorMarginRot) == 0
-                        || MathUtil.applyDeadband(
-                                Math.PI * 2 - m_swerveDrive.getRotation2d().getRadians(),
-                                SetAxisConstants.errorMarginRot) <= m_coordinates.getRotation())) {
-            return true;
-        }
         if (m_timer.get() >= SetAxisConstants.timeLimit) {
             return true;
         }
-        return false;
+
+        Pose2d pose = m_swerveDrive.getPoseMeters();
+        ChassisSpeeds speeds = m_swerveDrive.getSpeeds();
+        double positionError = pose.getTranslation().getDistance(getTargetTranslation());
+        double rotationError = Math.abs(pose.getRotation()
+                .minus(new Rotation2d(m_coordinates.getRotation())).getRadians());
+        double speed = Math.hypot(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond);
+
+        return positionError <= SetAxisConstants.errorMarginXY
+                && rotationError <= SetAxisConstants.errorMarginRot
+                && speed <= SetAxisConstants.errorMarginVelocity;
     }
 
     @Override
     public void end(boolean interrupted) {
         m_swerveDrive.stopSystem();
     }
+
+    private Translation2d getTargetTranslation() {
+        return new Translation2d(m_coordinates.getX(), m_coordinates.getY());
+    }
 }
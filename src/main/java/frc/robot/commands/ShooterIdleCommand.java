@@ -0,0 +1,99 @@
+package frc.robot.commands;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.FieldConstants;
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.Constants.CommandsConstants.ShooterIdleConstants;
+import frc.robot.subsystems.ShooterSystem;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Default shooter command. Pre-spins the flywheels while the robot holds a note and approaches
+ * the speaker, so a shot can fire as soon as it is commanded.
+ */
+public class ShooterIdleCommand extends Command {
+    private ShooterSystem m_shooterSystem;
+    private Supplier<Pose2d> m_poseSupplier;
+    private BooleanSupplier m_hasNote;
+
+    /**
+     * Constructor.
+     */
+    public ShooterIdleCommand(
+            ShooterSystem shooterSystem,
+            Supplier<Pose2d> poseSupplier,
+            BooleanSupplier hasNote) {
+        m_shooterSystem = shooterSystem;
+        m_poseSupplier = poseSupplier;
+        m_hasNote = hasNote;
+        addRequirements(m_shooterSystem);
+    }
+
+    /**
+     * Field position of the robot's own alliance speaker.
+     */
+    public static Translation2d getSpeakerTranslation() {
+        boolean isRed = DriverStation.getAlliance().orElse(Alliance.Blue) == Alliance.Red;
+        return new Translation2d(
+                isRed ? FieldConstants.redSpeakerX : FieldConstants.blueSpeakerX,
+                FieldConstants.speakerY);
+    }
+
+    /**
+     * Distance from the robot to its own alliance speaker.
+     */
+    public static double getDistanceToSpeaker(Pose2d pose) {
+        return pose.getTranslation().getDistance(getSpeakerTranslation());
+    }
+
+    /**
+     * Fraction of the shooting speed the flywheels should idle at for the current state.
+     */
+    public double getIdleFraction() {
+        if (!m_hasNote.getAsBoolean()
+                || RobotController.getBatteryVoltage() < ShooterIdleConstants.minBatteryVoltage) {
+            return 0;
+        }
+
+        double distance = getDistanceToSpeaker(m_poseSupplier.get());
+        double fraction = 0;
+        if (distance <= ShooterIdleConstants.fullSpinDistanceMeters) {
+            fraction = 1;
+        }
+        else if (distance <= ShooterIdleConstants.partialSpinDistanceMeters) {
+            fraction = ShooterIdleConstants.partialSpinFraction;
+        }
+        return Math.min(fraction, ShooterIdleConstants.maxIdleFraction);
+    }
+
+    @Override
+    public void initialize() {
+    }
+
+    @Override
+    public void execute() {
+        double fraction = getIdleFraction();
+        if (fraction > 0) {
+            m_shooterSystem.setShootVelocity(ShooterConstants.shooterTargetRPM * fraction);
+        }
+        else {
+            m_shooterSystem.stopSystem();
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return false;
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        m_shooterSystem.stopSystem();
+    }
+}
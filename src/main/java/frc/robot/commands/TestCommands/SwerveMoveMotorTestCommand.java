@@ -17,7 +17,7 @@ public class SwerveMoveMotorTestCommand extends Command {
 
     @Override
     public void initialize() {
-        m_timer.start();
+        m_timer.restart();
     }
 
     @Override
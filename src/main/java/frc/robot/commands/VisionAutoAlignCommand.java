@@ -1,79 +1,167 @@
 package frc.robot.commands;
 
-import edu.wpi.first.math.MathUtil;
-import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.Constants.CommandsConstants.VisionAutoAlignConstants;
+import frc.robot.Constants.VisionConstants;
 import frc.robot.subsystems.SwerveDriveSystem;
 import frc.robot.subsystems.VisionSystem;
+import java.util.Optional;
 
+/**
+ * Drives to a set distance straight out from an AprilTag, facing it. Each fresh camera frame
+ * places the tag on the field from the robot pose at the moment the frame was captured, and the
+ * goal pose is computed from there. Between frames, and when frames are too old to trust, the
+ * robot keeps driving to the last goal on odometry alone. Translation and heading follow
+ * profiles towards the goal and the command finishes once the robot is settled on it.
+ */
 public class VisionAutoAlignCommand extends Command {
     private SwerveDriveSystem m_swerveDrive;
-    private Timer m_timer;
-    private PIDController m_translationXpid = new PIDController(
-            VisionAutoAlignConstants.translationXPID_P, VisionAutoAlignConstants.translationXPID_I,
-            VisionAutoAlignConstants.translationXPID_D);
-    private PIDController m_translationYpid = new PIDController(
-            VisionAutoAlignConstants.translationYPID_P, VisionAutoAlignConstants.translationYPID_I,
-            VisionAutoAlignConstants.translationYPID_D);
-    private PIDController m_rotationPid = new PIDController(VisionAutoAlignConstants.rotationPID_P,
-            VisionAutoAlignConstants.rotationPID_I, VisionAutoAlignConstants.rotationPID_D);
-
     private VisionSystem m_visionSystem;
+    private Timer m_timer = new Timer();
     private double m_targetDistanceMeters = VisionAutoAlignConstants.targetDistanceMeters;
 
+    // Distance to the goal, driven to zero.
+    private ProfiledPIDController m_translationPid = new ProfiledPIDController(
+            VisionAutoAlignConstants.translationPID_P, VisionAutoAlignConstants.translationPID_I,
+            VisionAutoAlignConstants.translationPID_D,
+            new TrapezoidProfile.Constraints(VisionAutoAlignConstants.maxVelocityMetersPerSecond,
+                    VisionAutoAlignConstants.maxAccelerationMetersPerSecondSquared));
+    private ProfiledPIDController m_rotationPid = new ProfiledPIDController(
+            VisionAutoAlignConstants.rotationPID_P, VisionAutoAlignConstants.rotationPID_I,
+            VisionAutoAlignConstants.rotationPID_D,
+            new TrapezoidProfile.Constraints(VisionAutoAlignConstants.maxAngularVelocity,
+                    VisionAutoAlignConstants.maxAngularAcceleration));
+
+    private Pose2d m_goal;
+    private double m_lastFrameTimestamp = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Constructor.
+     */
     public VisionAutoAlignCommand(SwerveDriveSystem swerveDrive, VisionSystem visionSystem) {
         m_swerveDrive = swerveDrive;
         m_visionSystem = visionSystem;
         addRequirements(m_swerveDrive, m_visionSystem);
 
-        m_translationXpid.setTolerance(VisionAutoAlignConstants.errorMarginDistanceX);
-        m_translationYpid.setTolerance(VisionAutoAlignConstants.errorMarginDistanceY);
-        m_rotationPid.setTolerance(VisionAutoAlignConstants.errorMarginRot);
+        m_rotationPid.enableContinuousInput(-Math.PI, Math.PI);
     }
 
     @Override
     public void initialize() {
-        m_timer = new Timer();
-        m_timer.start();
+        m_goal = null;
+        m_lastFrameTimestamp = Double.NEGATIVE_INFINITY;
+        m_timer.restart();
+        m_visionSystem.startAiming(VisionConstants.targetedIDList);
     }
 
     @Override
     public void execute() {
-        double xspeed = m_translationXpid.calculate(m_visionSystem.getDistanceMetersX(), 0);
-        double yspeed = m_translationYpid.calculate(
-                m_visionSystem.getDistanceMetersY(),
-                m_targetDistanceMeters);
-        double rotSpeed = m_rotationPid.calculate(m_visionSystem.getX(), 0);
+        updateGoal();
+
+        Pose2d pose = m_swerveDrive.getPoseMeters();
+        if (m_goal == null) {
+            m_swerveDrive.stopSystem();
+            return;
+        }
 
-        m_swerveDrive.drive(-xspeed, -yspeed, -rotSpeed, true);
+        Translation2d offset = m_goal.getTranslation().minus(pose.getTranslation());
+        double distance = offset.getNorm();
+        Translation2d direction = distance > 1e-6 ? offset.div(distance) : new Translation2d();
+        double speed = -(m_translationPid.calculate(distance, 0)
+                + m_translationPid.getSetpoint().velocity);
+        double rotSpeed = m_rotationPid.calculate(pose.getRotation().getRadians(),
+                m_goal.getRotation().getRadians())
+                + m_rotationPid.getSetpoint().velocity;
+
+        m_swerveDrive.driveFromChassisSpeeds(ChassisSpeeds.fromFieldRelativeSpeeds(
+                direction.getX() * speed, direction.getY() * speed, rotSpeed,
+                pose.getRotation()));
     }
 
     @Override
     public boolean isFinished() {
-        if (m_visionSystem.isDetectedIDValid()) {
-            return true;
-        }
         if (m_timer.get() >= VisionAutoAlignConstants.timeLimit) {
             return true;
         }
-        if (MathUtil.applyDeadband(
-                m_visionSystem.getDistanceMetersY() - m_targetDistanceMeters,
-                VisionAutoAlignConstants.errorMarginDistanceY) == 0
-                && MathUtil.applyDeadband(
-                        m_visionSystem.getDistanceMetersX(),
-                        VisionAutoAlignConstants.errorMarginDistanceX) == 0
-                && MathUtil.applyDeadband(
-                        m_visionSystem.getX(),
-                        VisionAutoAlignConstants.errorMarginRot) == 0) {
-            return true;
+        if (m_goal == null) {
+            return false;
         }
-        return false;
+
+        Pose2d pose = m_swerveDrive.getPoseMeters();
+        ChassisSpeeds speeds = m_swerveDrive.getSpeeds();
+        double positionError = pose.getTranslation().getDistance(m_goal.getTranslation());
+        double rotationError = Math.abs(pose.getRotation().minus(m_goal.getRotation())
+                .getRadians());
+        double speed = Math.hypot(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond);
+
+        return positionError <= VisionAutoAlignConstants.errorMarginDistance
+                && rotationError <= VisionAutoAlignConstants.errorMarginRot
+                && speed <= VisionAutoAlignConstants.errorMarginVelocity;
     }
 
     @Override
     public void end(boolean interrupted) {
         m_swerveDrive.stopSystem();
+        m_visionSystem.stopAiming();
+    }
+
+    /**
+     * Recompute the goal from the latest camera frame if it is new and recent enough.
+     */
+    private void updateGoal() {
+        if (!m_visionSystem.isDetectedIDValid() || !m_visionSystem.isFrameValid()) {
+            return;
+        }
+        double captureTime = m_visionSystem.getCaptureTimestamp();
+        double age = Timer.getFPGATimestamp() - captureTime;
+        SmartDashboard.putNumber("Vision Align/Frame Age ms", age * 1000);
+        if (captureTime <= m_lastFrameTimestamp
+                || age > VisionAutoAlignConstants.maxFrameAgeSeconds) {
+            return;
+        }
+        m_lastFrameTimestamp = captureTime;
+
+        Pose2d captured = m_swerveDrive.getPoseAt(captureTime);
+        Translation2d toTag = m_visionSystem.getTargetTranslation()
+                .rotateBy(captured.getRotation());
+        Translation2d tag = captured.getTranslation().plus(toTag);
+
+        // Stand off along the tag's facing direction when the tag is on the field layout, and
+        // along the line of sight otherwise.
+        Optional<Pose2d> tagPose = m_visionSystem.getTagPose((int) m_visionSystem.getID());
+        Rotation2d facing = tagPose.isPresent()
+                ? tagPose.get().getRotation()
+                : toTag.getAngle().plus(Rotation2d.fromDegrees(180));
+        boolean firstGoal = m_goal == null;
+        m_goal = new Pose2d(
+                tag.plus(new Translation2d(m_targetDistanceMeters, facing)),
+                facing.plus(Rotation2d.fromDegrees(180)));
+        if (firstGoal) {
+            resetControllers();
+        }
+    }
+
+    /**
+     * Start the profiles from the robot's current motion towards the first goal.
+     */
+    private void resetControllers() {
+        Pose2d pose = m_swerveDrive.getPoseMeters();
+        ChassisSpeeds fieldSpeeds = m_swerveDrive.getFieldSpeeds();
+        Translation2d offset = m_goal.getTranslation().minus(pose.getTranslation());
+        double distance = offset.getNorm();
+        double approachSpeed = distance > 1e-6
+                ? (fieldSpeeds.vxMetersPerSecond * offset.getX()
+                        + fieldSpeeds.vyMetersPerSecond * offset.getY()) / distance
+                : 0;
+        m_translationPid.reset(distance, -approachSpeed);
+        m_rotationPid.reset(pose.getRotation().getRadians(), fieldSpeeds.omegaRadiansPerSecond);
     }
 }
@@ -10,18 +10,25 @@ import com.revrobotics.CANSparkBase.IdleMode;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.wpilibj.DutyCycleEncoder;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
+import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.ArmConstants;
+import frc.robot.Constants.SimConstants;
 import frc.robot.Constants.CommandsConstants.SetArmConstants;
 import frc.robot.commands.ArmDefaultCommand;
 import frc.robot.util.AppliedController;
+import frc.robot.util.MotorOutput;
+import frc.robot.util.MotorThermalModel;
+import frc.robot.util.PowerConsumer;
 
 /**
  * ArmSystem.
  */
-public class ArmSystem extends SubsystemBase {
+public class ArmSystem extends SubsystemBase implements PowerConsumer {
 
     private final CANSparkMax m_armMotorFollower = new CANSparkMax(ArmConstants.armMotorIDFollower,
             MotorType.kBrushless);
@@ -29,12 +36,43 @@ public class ArmSystem extends SubsystemBase {
             MotorType.kBrushless);
     private final DutyCycleEncoder m_ArmEncoder = new DutyCycleEncoder(
             ArmConstants.armEncoderChannel);
+    private final MotorOutput m_armMotorOutput = new MotorOutput("Arm", m_armMotorLeader);
+    private final MotorThermalModel m_leaderThermal = new MotorThermalModel("Arm Leader",
+            m_armMotorLeader);
+    private final MotorThermalModel m_followerThermal = new MotorThermalModel("Arm Follower",
+            m_armMotorFollower);
     private AppliedController m_controller;
     private RelativeEncoder m_relativeEncoder = m_armMotorLeader.getEncoder();
 
     private double maxOutputPercent = ArmConstants.maxOutputPercent;
+    private volatile double m_armOutput = 0;
+
+    // Angle held by the control loop thread, or NaN while the arm is driven open loop. Cleared and
+    // checked under the m_armMotorOutput lock together with the output it goes with, so the
+    // control thread never sends a step for a target that has just been cleared.
+    private volatile double m_targetAngle = Double.NaN;
+
+    // Physics model standing in for the arm. Only created in simulation.
+    private SingleJointedArmSim m_armSim;
 
     public ArmSystem(AppliedController controller) {
+        if (RobotBase.isSimulation()) {
+            // The reported arm angle falls as the motor drives forward and is not referenced to
+            // horizontal yet, so the model runs in 2 * PI minus the reported angle, without
+            // gravity.
+            m_armSim = new SingleJointedArmSim(
+                    DCMotor.getNEO(2),
+                    ArmConstants.gearRatio,
+                    SingleJointedArmSim.estimateMOI(
+                            ArmConstants.shootToPivotRadius,
+                            SimConstants.armMassKg),
+                    ArmConstants.shootToPivotRadius,
+                    2 * Math.PI - SetArmConstants.armMin,
+                    2 * Math.PI - SetArmConstants.armMax,
+                    false,
+                    2 * Math.PI - SetArmConstants.armMin);
+        }
+
         m_armMotorLeader.restoreFactoryDefaults();
         m_armMotorFollower.restoreFactoryDefaults();
         m_armMotorLeader.setSmartCurrentLimit(ArmConstants.smartCurrentLimit);
@@ -55,13 +93,33 @@ public class ArmSystem extends SubsystemBase {
     }
 
     public double getArmAngleRadians() {
+        if (m_armSim != null) {
+            return 2 * Math.PI - m_armSim.getAngleRads();
+        }
         return 2 * Math.PI
                 - (m_ArmEncoder.getAbsolutePosition() + ArmConstants.armAngleOffsetHorizontal) * 6;
     }
 
+    /**
+     * Height of the shooter over the ground, in meters.
+     */
     public double getArmHeight() {
-        return ArmConstants.pivotHeightOverGround +
-                (ArmConstants.shootToPivotRadius * Math.sin(getArmAngleRadians()));
+        return getArmHeight(getArmAngleRadians());
+    }
+
+    /**
+     * Elevation of the shooter above horizontal, in radians, for a reported arm angle.
+     */
+    public static double getElevation(double armAngleRadians) {
+        return ArmConstants.stowedElevationRadians + (SetArmConstants.armMin - armAngleRadians);
+    }
+
+    /**
+     * Height of the shooter over the ground, in meters, for a reported arm angle.
+     */
+    public static double getArmHeight(double armAngleRadians) {
+        return ArmConstants.pivotHeightOverGround
+                + ArmConstants.shootToPivotRadius * Math.sin(getElevation(armAngleRadians));
     }
 
     public double getShootingAngle(double distance) {
@@ -71,20 +129,60 @@ public class ArmSystem extends SubsystemBase {
 
     }
 
+    /**
+     * Drive the arm open loop, within its travel limits.
+     */
     public void setArmSpeed(double speed) {
+        synchronized (m_armMotorOutput) {
+            m_targetAngle = Double.NaN;
+            applyArmSpeed(speed);
+        }
+    }
+
+    /**
+     * Hold the arm at the given angle from the control loop thread until another output is set.
+     */
+    public void setTargetAngle(double angle) {
+        m_targetAngle = angle;
+    }
+
+    /**
+     * Run one step of the arm angle controller. Runs on the control loop thread.
+     */
+    public void runAngleControl() {
+        double target = m_targetAngle;
+        if (Double.isNaN(target)) {
+            return;
+        }
+        double speed = SetArmConstants.PID_P * (getArmAngleRadians() - target);
+        synchronized (m_armMotorOutput) {
+            // The main thread may have stopped the arm or moved the target since the snapshot.
+            if (m_targetAngle != target) {
+                return;
+            }
+            applyArmSpeed(speed);
+        }
+    }
+
+    private void applyArmSpeed(double speed) {
         speed = MathUtil.clamp(speed, -maxOutputPercent, maxOutputPercent);
         if ((speed < 0 && getArmAngleRadians() < SetArmConstants.armMin)
                 || (speed > 0 && getArmAngleRadians() > SetArmConstants.armMax)) {
-            m_armMotorLeader.set(speed);
+            m_armOutput = speed;
         }
         else {
-            m_armMotorLeader.set(0);
+            m_armOutput = 0;
         }
+        m_armMotorOutput.set(m_armOutput);
     }
 
     public void setArmSpeedAdmin(double speed) {
         speed = MathUtil.clamp(speed, -maxOutputPercent, maxOutputPercent);
-        m_armMotorLeader.set(speed);
+        synchronized (m_armMotorOutput) {
+            m_targetAngle = Double.NaN;
+            m_armOutput = speed;
+            m_armMotorOutput.set(speed);
+        }
     }
 
     private double getRelativeEncoderRadians() {
@@ -95,8 +193,34 @@ public class ArmSystem extends SubsystemBase {
         return m_armMotorLeader.get();
     }
 
+    @Override
+    public boolean isDemandingPower() {
+        return m_armOutput != 0 || !Double.isNaN(m_targetAngle);
+    }
+
+    @Override
+    public double getThermalDerate() {
+        return Math.min(m_leaderThermal.getDerate(), m_followerThermal.getDerate());
+    }
+
+    @Override
+    public void applyPowerBudget(int currentLimitAmps, double compensationVolts) {
+        m_armMotorLeader.setSmartCurrentLimit(currentLimitAmps);
+        m_armMotorFollower.setSmartCurrentLimit(currentLimitAmps);
+        m_armMotorLeader.enableVoltageCompensation(compensationVolts);
+        m_armMotorFollower.enableVoltageCompensation(compensationVolts);
+    }
+
     @Override
     public void periodic() {
+        m_leaderThermal.update();
+        m_followerThermal.update();
+    }
+
+    @Override
+    public void simulationPeriodic() {
+        m_armSim.setInputVoltage(m_armOutput * 12);
+        m_armSim.update(SimConstants.loopPeriodSeconds);
     }
 
     public void initShuffleBoard() {
@@ -111,6 +235,10 @@ public class ArmSystem extends SubsystemBase {
      * Stop the arm system.
      */
     public void stopSystem() {
-        m_armMotorLeader.stopMotor();
+        synchronized (m_armMotorOutput) {
+            m_targetAngle = Double.NaN;
+            m_armOutput = 0;
+            m_armMotorOutput.stopMotor();
+        }
     }
 }
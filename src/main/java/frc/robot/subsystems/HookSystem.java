@@ -9,17 +9,35 @@ import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.CommandsConstants.SetArmConstants;
 import frc.robot.Constants.HookConstants;
+import frc.robot.Constants.PowerBudgetConstants;
+import frc.robot.util.MotorOutput;
+import frc.robot.util.MotorThermalModel;
+import frc.robot.util.PowerBudget;
+import frc.robot.util.PowerConsumer;
 
-public class HookSystem extends SubsystemBase {
+public class HookSystem extends SubsystemBase implements PowerConsumer {
     private CANSparkMax m_leaderMotor = new CANSparkMax(HookConstants.leftHookCANId,
             MotorType.kBrushless);
     private CANSparkMax m_followerMotor = new CANSparkMax(HookConstants.rightHookCANId,
             MotorType.kBrushless);
+    private MotorOutput m_leaderOutput = new MotorOutput("Hook", m_leaderMotor);
+    private MotorThermalModel m_leaderThermal = new MotorThermalModel("Hook Leader",
+            m_leaderMotor);
+    private MotorThermalModel m_followerThermal = new MotorThermalModel("Hook Follower",
+            m_followerMotor);
+    private double m_commandedSpeed = 0;
     private RelativeEncoder m_lEncoder = m_leaderMotor.getEncoder();
     private RelativeEncoder m_rEncoder = m_followerMotor.getEncoder();
 
-    public HookSystem() {
+    /**
+     * Constructor. The hook registers itself last with the power budget, so it only gets
+     * current the other mechanisms are not using.
+     */
+    public HookSystem(PowerBudget powerBudget) {
         m_followerMotor.follow(m_leaderMotor);
+        powerBudget.register("Hook", this, 2,
+                PowerBudgetConstants.hookMinAmps, PowerBudgetConstants.hookMaxAmps,
+                PowerBudgetConstants.hookCompensationVolts);
     }
 
     public double getLeadEncoderValue() {
@@ -35,17 +53,19 @@ public class HookSystem extends SubsystemBase {
                 .clamp(speed, -HookConstants.maxOutputPercent, HookConstants.maxOutputPercent);
         if ((speed < 0 && getLeadEncoderValue() < SetArmConstants.armMin)
                 || (speed > 0 && getLeadEncoderValue() > SetArmConstants.armMax)) {
-            m_leaderMotor.set(speed);
+            m_commandedSpeed = speed;
         }
         else {
-            m_leaderMotor.set(0);
+            m_commandedSpeed = 0;
         }
+        m_leaderOutput.set(m_commandedSpeed);
     }
 
     public void setHookSpeedAdmin(double speed) {
         speed = MathUtil
                 .clamp(speed, -HookConstants.maxOutputPercent, HookConstants.maxOutputPercent);
-        m_leaderMotor.set(speed);
+        m_commandedSpeed = speed;
+        m_leaderOutput.set(speed);
     }
 
     public double getLeadMotorSpeed() {
@@ -65,8 +85,33 @@ public class HookSystem extends SubsystemBase {
 
     }
 
+    @Override
+    public boolean isDemandingPower() {
+        return m_commandedSpeed != 0;
+    }
+
+    @Override
+    public double getThermalDerate() {
+        return Math.min(m_leaderThermal.getDerate(), m_followerThermal.getDerate());
+    }
+
+    @Override
+    public void applyPowerBudget(int currentLimitAmps, double compensationVolts) {
+        m_leaderMotor.setSmartCurrentLimit(currentLimitAmps);
+        m_followerMotor.setSmartCurrentLimit(currentLimitAmps);
+        m_leaderMotor.enableVoltageCompensation(compensationVolts);
+        m_followerMotor.enableVoltageCompensation(compensationVolts);
+    }
+
+    @Override
+    public void periodic() {
+        m_leaderThermal.update();
+        m_followerThermal.update();
+    }
+
     public void stopSystem() {
-        m_leaderMotor.stopMotor();
+        m_commandedSpeed = 0;
+        m_leaderOutput.stopMotor();
 
     }
 
@@ -1,28 +1,59 @@
 package frc.robot.subsystems;
 
 import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
 import com.revrobotics.CANSparkLowLevel.MotorType;
+import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
 
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.IntakeConstants;
 import frc.robot.commands.IntakeDefaultCommand;
+import frc.robot.util.CurrentNoteDetector;
+import frc.robot.util.InterruptNoteSensor;
+import frc.robot.util.MotorOutput;
+import frc.robot.util.MotorThermalModel;
+import frc.robot.util.PowerConsumer;
+import frc.robot.util.NoteSensor;
 
 /**
  * Stop the intake system.
  */
-public class IntakeSystem extends SubsystemBase {
+public class IntakeSystem extends SubsystemBase implements PowerConsumer, AutoCloseable {
     private final CANSparkMax m_IntakeMotorFollower = new CANSparkMax(
             IntakeConstants.intakeMotorLeftID,
             MotorType.kBrushless);
     private final CANSparkMax m_intakeMotorLeader = new CANSparkMax(
             IntakeConstants.intakeMotorRightID,
             MotorType.kBrushless);
+    private final MotorOutput m_intakeOutput = new MotorOutput("Intake", m_intakeMotorLeader);
+    private final MotorThermalModel m_leaderThermal = new MotorThermalModel("Intake Leader",
+            m_intakeMotorLeader);
+    private final MotorThermalModel m_followerThermal = new MotorThermalModel("Intake Follower",
+            m_IntakeMotorFollower);
     private DigitalInput refelectometer = new DigitalInput(IntakeConstants.reflectChannel);
+    private NoteSensor m_noteSensor = new InterruptNoteSensor(refelectometer,
+            IntakeConstants.reflectometerActiveLow, IntakeConstants.noteDebounceSeconds);
+    private RelativeEncoder m_intakeEncoder = m_intakeMotorLeader.getEncoder();
+    private CurrentNoteDetector m_currentDetector = new CurrentNoteDetector(
+            IntakeConstants.noteCurrentSpikeAmps,
+            IntakeConstants.noteVelocityDropFraction,
+            IntakeConstants.noteDetectSpinUpSeconds,
+            IntakeConstants.noteDetectConfirmSamples,
+            IntakeConstants.noteDetectBaselineAlpha);
+    // Only runs while the rollers are driven.
+    private Notifier m_currentSampler = new Notifier(this::sampleCurrent);
+    private boolean m_sampling = false;
     private double maxOutputPercent = IntakeConstants.maxOutputPercent;
 
+    // When set, the intake is stopped from the sensor interrupt as soon as a note arrives.
+    private volatile boolean m_stopOnNote = false;
+    private volatile double m_commandedSpeed = 0;
+
     public IntakeSystem() {
         m_IntakeMotorFollower.restoreFactoryDefaults();
         m_intakeMotorLeader.restoreFactoryDefaults();
@@ -34,6 +65,10 @@ public class IntakeSystem extends SubsystemBase {
         m_IntakeMotorFollower.setInverted(true);
         m_intakeMotorLeader.setInverted(true);
         m_IntakeMotorFollower.follow(m_intakeMotorLeader);
+        m_noteSensor.setOnNoteAcquired(this::onNoteArrived);
+        m_currentDetector.setOnNoteDetected(this::onNoteArrived);
+
+        m_currentSampler.setName("Intake Current Sampler");
         setDefaultCommand(new IntakeDefaultCommand(this));
     }
 
@@ -43,26 +78,142 @@ public class IntakeSystem extends SubsystemBase {
 
     public void setIntakeSpeed(double speed) {
         speed = MathUtil.clamp(speed, -maxOutputPercent, maxOutputPercent);
-        m_intakeMotorLeader.set(speed);
+        m_commandedSpeed = speed;
+        m_intakeOutput.set(speed);
+        if (speed != 0) {
+            setSampling(true);
+        }
+    }
+
+    /**
+     * Start or stop the current sampler. Status frame 1 carries velocity and current, so it is
+     * only sped up for the detector while sampling, to keep the CAN load down the rest of the
+     * time.
+     */
+    private void setSampling(boolean sampling) {
+        if (sampling == m_sampling) {
+            return;
+        }
+        m_sampling = sampling;
+        int framePeriodMs = sampling
+                ? IntakeConstants.currentStatusFramePeriodMs
+                : IntakeConstants.defaultStatusFramePeriodMs;
+        m_intakeMotorLeader.setPeriodicFramePeriod(PeriodicFrame.kStatus1, framePeriodMs);
+        m_IntakeMotorFollower.setPeriodicFramePeriod(PeriodicFrame.kStatus1, framePeriodMs);
+        if (sampling) {
+            m_currentSampler.startPeriodic(IntakeConstants.currentSamplePeriodSeconds);
+        }
+        else {
+            m_currentSampler.stop();
+        }
+    }
+
+    private void onNoteArrived() {
+        if (m_stopOnNote) {
+            m_commandedSpeed = 0;
+            m_intakeOutput.stopMotor();
+        }
+    }
+
+    /**
+     * Runs on the notifier thread. Feeds the leader and follower current and roller speed to the
+     * current-signature detector while the intake is pulling a note in.
+     */
+    private void sampleCurrent() {
+        m_currentDetector.update(
+                m_intakeMotorLeader.getOutputCurrent() + m_IntakeMotorFollower.getOutputCurrent(),
+                m_intakeEncoder.getVelocity(),
+                m_stopOnNote && m_commandedSpeed != 0,
+                Timer.getFPGATimestamp());
     }
 
     public boolean getReflectometer() {
         return refelectometer.get();
     }
 
+    /**
+     * Returns true when either the reflectometer or the current signature shows a note. Either
+     * source alone is enough, so a failed beam sensor does not stop the intake from working.
+     */
+    public boolean hasNote() {
+        return m_noteSensor.hasNote() || m_currentDetector.isNoteDetected();
+    }
+
+    /**
+     * Returns true when the reflectometer alone sees a note.
+     */
+    public boolean isNoteAtSensor() {
+        return m_noteSensor.hasNote();
+    }
+
+    /**
+     * FPGA timestamp in seconds of the last note acquisition, or NaN if none has been seen.
+     */
+    public double getLastNoteAcquireTimestamp() {
+        return m_noteSensor.getLastAcquireTimestamp();
+    }
+
+    /**
+     * Stop the intake immediately, from the sensor interrupt or current sampler, when a note
+     * arrives. Turning this off hands the note to another command, which clears the current
+     * detection since that command moves the note on.
+     */
+    public void setStopOnNote(boolean stopOnNote) {
+        m_stopOnNote = stopOnNote;
+        if (!stopOnNote) {
+            m_currentDetector.reset();
+        }
+    }
+
     public void initShuffleBoard() {
         Shuffleboard.getTab("Intake").add("Intake Speed: ", getIntakeSpeed());
         Shuffleboard.getTab("Intake").add("Current Command", this);
+        Shuffleboard.getTab("Intake").addBoolean("Has Note", () -> hasNote());
+        Shuffleboard.getTab("Intake")
+                .addDouble("Last Note Acquired", () -> getLastNoteAcquireTimestamp());
+        Shuffleboard.getTab("Intake")
+                .addBoolean("Beam Sees Note", () -> m_noteSensor.hasNote());
+        Shuffleboard.getTab("Intake")
+                .addBoolean("Current Sees Note", () -> m_currentDetector.isNoteDetected());
+    }
+
+    @Override
+    public boolean isDemandingPower() {
+        return m_commandedSpeed != 0;
+    }
+
+    @Override
+    public double getThermalDerate() {
+        return Math.min(m_leaderThermal.getDerate(), m_followerThermal.getDerate());
+    }
+
+    @Override
+    public void applyPowerBudget(int currentLimitAmps, double compensationVolts) {
+        m_intakeMotorLeader.setSmartCurrentLimit(currentLimitAmps);
+        m_IntakeMotorFollower.setSmartCurrentLimit(currentLimitAmps);
+        m_intakeMotorLeader.enableVoltageCompensation(compensationVolts);
+        m_IntakeMotorFollower.enableVoltageCompensation(compensationVolts);
     }
 
     @Override
     public void periodic() {
+        m_noteSensor.update(Timer.getFPGATimestamp());
+        m_leaderThermal.update();
+        m_followerThermal.update();
     }
 
     /**
      * Stop the intake system.
      */
     public void stopSystem() {
-        m_intakeMotorLeader.stopMotor();
+        m_commandedSpeed = 0;
+        m_intakeOutput.stopMotor();
+        setSampling(false);
+    }
+
+    @Override
+    public void close() {
+        stopSystem();
+        m_currentSampler.close();
     }
 }
@@ -5,52 +5,158 @@
 package frc.robot.subsystems;
 
 import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkPIDController;
+import com.revrobotics.CANSparkBase.ControlType;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
+import edu.wpi.first.wpilibj.simulation.FlywheelSim;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.ShooterConstants;
+import frc.robot.Constants.SimConstants;
+import frc.robot.util.MotorOutput;
+import frc.robot.util.MotorThermalModel;
+import frc.robot.util.PowerConsumer;
 
 /**
  * SwerveDriveSystem.
  */
-public class ShooterSystem extends SubsystemBase {
+public class ShooterSystem extends SubsystemBase implements PowerConsumer {
     private CANSparkMax m_shooterMotorFollower = new CANSparkMax(ShooterConstants.shooterRightMotorID,
             MotorType.kBrushless);
     private CANSparkMax m_shooterMotorLeader = new CANSparkMax(ShooterConstants.shooterLeftMotorID,
             MotorType.kBrushless);
+    private final MotorOutput m_shooterOutput = new MotorOutput("Shooter", m_shooterMotorLeader);
+    private final MotorThermalModel m_leaderThermal = new MotorThermalModel("Shooter Leader",
+            m_shooterMotorLeader);
+    private final MotorThermalModel m_followerThermal = new MotorThermalModel(
+            "Shooter Follower", m_shooterMotorFollower);
+    private RelativeEncoder m_shooterEncoder = m_shooterMotorLeader.getEncoder();
+    private SparkPIDController m_velocityPidController = m_shooterMotorLeader.getPIDController();
 
     private double maxOutputPercent = ShooterConstants.maxOutputPercent;
 
+    // Zero when the flywheels are not under velocity control.
+    private double m_targetRPM = 0;
+    private double m_openLoopOutput = 0;
+
+    // Physics model standing in for both flywheel motors. Only created in simulation.
+    private FlywheelSim m_flywheelSim;
+
     public ShooterSystem() {
+        if (RobotBase.isSimulation()) {
+            m_flywheelSim = new FlywheelSim(DCMotor.getNEO(2), 1,
+                    SimConstants.flywheelMomentOfInertia);
+        }
+
         m_shooterMotorLeader.setInverted(true);
         m_shooterMotorFollower.setInverted(true);
         m_shooterMotorFollower.follow(m_shooterMotorLeader);
+
+        m_velocityPidController.setP(ShooterConstants.velocityPID_P);
+        m_velocityPidController.setI(ShooterConstants.velocityPID_I);
+        m_velocityPidController.setD(ShooterConstants.velocityPID_D);
+        m_velocityPidController.setFF(ShooterConstants.velocityPID_FF);
+        m_velocityPidController.setOutputRange(-maxOutputPercent, maxOutputPercent);
         initShuffleBoard();
     }
 
+    /**
+     * Open-loop percent output. Used for short moves such as pulling the note back.
+     */
     public void setShootSpeed(double speed) {
+        m_targetRPM = 0;
         speed = MathUtil.clamp(speed, -maxOutputPercent, maxOutputPercent);
-        m_shooterMotorLeader.set(speed);
+        m_openLoopOutput = speed;
+        m_shooterOutput.set(speed);
+    }
+
+    /**
+     * Closed-loop flywheel velocity using the SparkMax onboard velocity PID.
+     */
+    public void setShootVelocity(double rpm) {
+        m_targetRPM = rpm;
+        m_shooterOutput.setReference(rpm, ControlType.kVelocity);
     }
 
     public double getShootSpeed() {
         return m_shooterMotorLeader.get();
     }
 
+    public double getShootVelocityRPM() {
+        if (m_flywheelSim != null) {
+            return m_flywheelSim.getAngularVelocityRPM();
+        }
+        return m_shooterEncoder.getVelocity();
+    }
+
+    public double getTargetRPM() {
+        return m_targetRPM;
+    }
+
+    /**
+     * Returns true once the measured flywheel speed is within tolerance of the velocity setpoint.
+     */
+    public boolean isAtSpeed() {
+        return m_targetRPM != 0
+                && Math.abs(getShootVelocityRPM() - m_targetRPM)
+                        <= ShooterConstants.atSpeedToleranceRPM;
+    }
+
     public void initShuffleBoard() {
         Shuffleboard.getTab("Shooter").addDouble("Shooter Speed: ", () -> getShootSpeed());
+        Shuffleboard.getTab("Shooter").addDouble("Shooter RPM: ", () -> getShootVelocityRPM());
+        Shuffleboard.getTab("Shooter").addDouble("Target RPM: ", () -> getTargetRPM());
+        Shuffleboard.getTab("Shooter").addBoolean("At Speed: ", () -> isAtSpeed());
+    }
+
+    @Override
+    public boolean isDemandingPower() {
+        return m_targetRPM != 0 || m_openLoopOutput != 0;
+    }
+
+    @Override
+    public double getThermalDerate() {
+        return Math.min(m_leaderThermal.getDerate(), m_followerThermal.getDerate());
+    }
+
+    @Override
+    public void applyPowerBudget(int currentLimitAmps, double compensationVolts) {
+        m_shooterMotorLeader.setSmartCurrentLimit(currentLimitAmps);
+        m_shooterMotorFollower.setSmartCurrentLimit(currentLimitAmps);
+        m_shooterMotorLeader.enableVoltageCompensation(compensationVolts);
+        m_shooterMotorFollower.enableVoltageCompensation(compensationVolts);
     }
 
     @Override
     public void periodic() {
+        m_leaderThermal.update();
+        m_followerThermal.update();
+    }
+
+    @Override
+    public void simulationPeriodic() {
+        double output = m_openLoopOutput;
+        if (m_targetRPM != 0) {
+            // Stands in for the SparkMax onboard velocity PID.
+            output = ShooterConstants.velocityPID_FF * m_targetRPM
+                    + ShooterConstants.velocityPID_P * (m_targetRPM - getShootVelocityRPM());
+        }
+        output = MathUtil.clamp(output, -maxOutputPercent, maxOutputPercent);
+        m_flywheelSim.setInputVoltage(output * 12);
+        m_flywheelSim.update(SimConstants.loopPeriodSeconds);
     }
 
     /**
      * Stop the swerve drive system.
      */
     public void stopSystem() {
-        m_shooterMotorLeader.stopMotor();
+        m_targetRPM = 0;
+        m_openLoopOutput = 0;
+        m_shooterOutput.stopMotor();
     }
 }
@@ -7,23 +7,31 @@ package frc.robot.subsystems;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
-import edu.wpi.first.networktables.GenericEntry;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.shuffleboard.BuiltInLayouts;
-import edu.wpi.first.wpilibj.shuffleboard.BuiltInWidgets;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants.SimConstants;
 import frc.robot.Constants.SwerveSystemConstants;
 import frc.robot.Constants.SwerveSystemConstants.SwerveSystemDeviceConstants;
+import frc.robot.Constants.TippingConstants;
+import frc.robot.Constants.TractionConstants;
 import frc.robot.commands.DriveSwerveCommand;
 import frc.robot.util.AppliedController;
+import frc.robot.util.PowerConsumer;
+import frc.robot.util.TractionMonitor;
+import frc.robot.util.TunableNumber;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.DoubleSupplier;
 
 import com.ctre.phoenix6.StatusCode;
@@ -32,12 +40,13 @@ import com.ctre.phoenix6.hardware.Pigeon2;
 /**
  * SwerveDriveSystem.
  */
-public class SwerveDriveSystem extends SubsystemBase {
-    GenericEntry m_getPidDriveP;
-    GenericEntry m_getPidDriveD;
+public class SwerveDriveSystem extends SubsystemBase implements PowerConsumer {
+    // Slider-backed gains. Device PIDs are only written when one of these changes.
+    private TunableNumber m_pidDriveP;
+    private TunableNumber m_pidDriveD;
 
-    GenericEntry m_getPidTurnP;
-    GenericEntry m_getPidTurnD;
+    private TunableNumber m_pidTurnP;
+    private TunableNumber m_pidTurnD;
 
     public static final boolean isPIDTuning = SwerveSystemConstants.isPIDTuning;
 
@@ -95,12 +104,43 @@ public class SwerveDriveSystem extends SubsystemBase {
                     m_backRight.getPosition()
             });
 
+    private final SwerveModule[] m_modules = {
+            m_frontLeft, m_frontRight, m_backLeft, m_backRight };
+    private final TractionMonitor m_traction = new TractionMonitor(
+            TractionConstants.slipSpeedThresholdMetersPerSecond, TractionConstants.slipRatio,
+            m_frontLeftLocation, m_frontRightLocation, m_backLeftLocation, m_backRightLocation);
+    private final double[] m_odometryDistances = new double[4];
+    private final double[] m_lastRawDistances = new double[4];
+    private double m_lastTractionTime = Double.NaN;
+    private double m_tractionDt = 0;
+    private Rotation2d m_lastYaw = new Rotation2d();
+
+    private final TimeInterpolatableBuffer<Pose2d> m_poseHistory =
+            TimeInterpolatableBuffer.createBuffer(SwerveSystemConstants.poseHistorySeconds);
+
     private AppliedController m_controller;
 
     private boolean[] m_status = new boolean[4];
 
+    private double m_simYawDegrees = 0;
+
+    // Latest module setpoints, handed to the control loop thread. Null while stopped.
+    private final AtomicReference<SwerveModuleState[]> m_moduleSetpoints =
+            new AtomicReference<SwerveModuleState[]>();
+    private boolean m_modulesStopped = true;
+    private boolean m_outputSuppressed = false;
+
+    // Acceleration limit for the current arm position, and the last field velocity it let through.
+    private DoubleSupplier m_maxAcceleration = () -> Double.POSITIVE_INFINITY;
+    private Translation2d m_lastDriveVelocity = new Translation2d();
+    private double m_lastDriveTime = Double.NaN;
+
     public SwerveDriveSystem(AppliedController controller) {
         m_controller = controller;
+        for (int i = 0; i < m_modules.length; i++) {
+            m_odometryDistances[i] = m_modules[i].getDriveEncoderPosition();
+            m_lastRawDistances[i] = m_odometryDistances[i];
+        }
         initShuffleBoard();
         setDefaultCommand(new DriveSwerveCommand(this, m_controller));
         Shuffleboard.getTab("Swerve").add("Robot Name", System.getenv("serialnum"));
@@ -120,6 +160,11 @@ public class SwerveDriveSystem extends SubsystemBase {
         Shuffleboard.getTab("Movement Test").addBoolean("Front Right: ", () -> m_status[2]);
         Shuffleboard.getTab("Movement Test").addBoolean("Back Right: ", () -> m_status[3]);
 
+        Shuffleboard.getTab("Traction").addBoolean("Front Left Slip", () -> isModuleSlipping(0));
+        Shuffleboard.getTab("Traction").addBoolean("Front Right Slip", () -> isModuleSlipping(1));
+        Shuffleboard.getTab("Traction").addBoolean("Back Left Slip", () -> isModuleSlipping(2));
+        Shuffleboard.getTab("Traction").addBoolean("Back Right Slip", () -> isModuleSlipping(3));
+
         // m_frontLeft.displayDesiredStateToDashBoard("Front Left");
         // m_backLeft.displayDesiredStateToDashBoard("Back Left");
         // m_frontRight.displayDesiredStateToDashBoard("Front Right");
@@ -132,24 +177,27 @@ public class SwerveDriveSystem extends SubsystemBase {
         displayModuleToSingleSwerveDashV2("Back Right", m_backRight);
 
         if (isPIDTuning) {
-            m_getPidDriveP = Shuffleboard.getTab("Swerve Tuning")
-                    .getLayout("PID Tuning Drive Values", BuiltInLayouts.kList)
-                    .add("Drive P", SwerveModule.pidDriveP).withWidget(BuiltInWidgets.kNumberSlider)
-                    .withProperties(Map.of("min", 0, "max", 5)).getEntry();
-            m_getPidDriveD = Shuffleboard.getTab("Swerve Tuning")
-                    .getLayout("PID Tuning Drive Values", BuiltInLayouts.kList)
-                    .add("Drive D", SwerveModule.pidDriveD).withWidget(BuiltInWidgets.kNumberSlider)
-                    .withProperties(Map.of("min", 0, "max", 5)).getEntry();
-
-            m_getPidTurnP = Shuffleboard.getTab("Swerve Tuning")
-                    .getLayout("PID Tuning Turn Values", BuiltInLayouts.kList)
-                    .add("Turn P", SwerveModule.pidTurnP).withWidget(BuiltInWidgets.kNumberSlider)
-                    .withProperties(Map.of("min", 0, "max", 5)).getEntry();
-            m_getPidTurnD = Shuffleboard.getTab("Swerve Tuning")
-                    .getLayout("PID Tuning Turn Values", BuiltInLayouts.kList)
-                    .add("Turn D", SwerveModule.pidTurnD).withWidget(BuiltInWidgets.kNumberSlider)
-                    .withProperties(Map.of("min", 0, "max", 5)).getEntry();
-
+            ShuffleboardLayout driveLayout = Shuffleboard.getTab("Swerve Tuning")
+                    .getLayout("PID Tuning Drive Values", BuiltInLayouts.kList);
+            ShuffleboardLayout turnLayout = Shuffleboard.getTab("Swerve Tuning")
+                    .getLayout("PID Tuning Turn Values", BuiltInLayouts.kList);
+
+            m_pidDriveP = new TunableNumber(driveLayout, "Drive P", SwerveModule.pidDriveP, 5,
+                    value -> applyDrivePid());
+            m_pidDriveD = new TunableNumber(driveLayout, "Drive D", SwerveModule.pidDriveD, 5,
+                    value -> applyDrivePid());
+            m_pidTurnP = new TunableNumber(turnLayout, "Turn P", SwerveModule.pidTurnP, 5,
+                    value -> applyTurnPid());
+            m_pidTurnD = new TunableNumber(turnLayout, "Turn D", SwerveModule.pidTurnD, 5,
+                    value -> applyTurnPid());
+
+            // Gains saved from an earlier session replace the constants once, at boot.
+            if (m_pidDriveP.isChanged() || m_pidDriveD.isChanged()) {
+                applyDrivePid();
+            }
+            if (m_pidTurnP.isChanged() || m_pidTurnD.isChanged()) {
+                applyTurnPid();
+            }
         }
     }
 
@@ -168,20 +216,114 @@ public class SwerveDriveSystem extends SubsystemBase {
     public void drive(double xspeed, double yspeed, double rot, boolean fieldRelative) {
         // System.out.println("xSpeed: " + xSpeed + ", ySpeed: " + ySpeed + ", rot: " + rot);
 
-        var swerveModuleStates = m_kinematics.toSwerveModuleStates(
-                fieldRelative ? ChassisSpeeds
-                        .fromFieldRelativeSpeeds(
-                                xspeed,
-                                yspeed,
-                                rot * m_maxAngularSpeed,
-                                getRotation2d())
-                        : new ChassisSpeeds(xspeed, yspeed, rot * m_maxAngularSpeed));
+        ChassisSpeeds speeds = fieldRelative ? ChassisSpeeds
+                .fromFieldRelativeSpeeds(
+                        xspeed,
+                        yspeed,
+                        rot * m_maxAngularSpeed,
+                        getRotation2d())
+                : new ChassisSpeeds(xspeed, yspeed, rot * m_maxAngularSpeed);
+        var swerveModuleStates = m_kinematics.toSwerveModuleStates(limitAcceleration(speeds));
 
         SwerveDriveKinematics.desaturateWheelSpeeds(swerveModuleStates, m_maxSpeed);
-        m_frontLeft.setDesiredState(swerveModuleStates[0]);
-        m_frontRight.setDesiredState(swerveModuleStates[1]);
-        m_backLeft.setDesiredState(swerveModuleStates[2]);
-        m_backRight.setDesiredState(swerveModuleStates[3]);
+        // The modules belong to the control loop thread, so suppressed warm-up calls stop here.
+        if (!m_outputSuppressed) {
+            m_moduleSetpoints.set(swerveModuleStates);
+        }
+    }
+
+    /**
+     * Set the source of the largest safe acceleration, such as the tipping limit for the current
+     * arm position.
+     */
+    public void setMaxAccelerationSupplier(DoubleSupplier maxAcceleration) {
+        m_maxAcceleration = maxAcceleration;
+    }
+
+    /**
+     * Limit the change in field-frame translation velocity since the last drive command to the
+     * safe acceleration. Working in the field frame keeps turning at a constant field velocity
+     * from counting as acceleration. Rotation is left alone since it does not move the center of
+     * gravity.
+     */
+    private ChassisSpeeds limitAcceleration(ChassisSpeeds speeds) {
+        double now = Timer.getFPGATimestamp();
+        double dt = now - m_lastDriveTime;
+        m_lastDriveTime = now;
+        Rotation2d heading = getRotation2d();
+        if (!(dt <= TippingConstants.staleCommandSeconds)) {
+            ChassisSpeeds measured = getSpeeds();
+            m_lastDriveVelocity = new Translation2d(measured.vxMetersPerSecond,
+                    measured.vyMetersPerSecond).rotateBy(heading);
+            dt = TimedRobot.kDefaultPeriod;
+        }
+
+        Translation2d velocity = new Translation2d(speeds.vxMetersPerSecond,
+                speeds.vyMetersPerSecond).rotateBy(heading);
+        double maxAcceleration = m_maxAcceleration.getAsDouble();
+        if (maxAcceleration < TippingConstants.unlimitedAccelerationMetersPerSecondSquared) {
+            Translation2d change = velocity.minus(m_lastDriveVelocity);
+            double maxChange = maxAcceleration * dt;
+            if (change.getNorm() > maxChange) {
+                velocity = m_lastDriveVelocity.plus(change.times(maxChange / change.getNorm()));
+                Translation2d robotVelocity = velocity.rotateBy(heading.unaryMinus());
+                speeds = new ChassisSpeeds(robotVelocity.getX(), robotVelocity.getY(),
+                        speeds.omegaRadiansPerSecond);
+            }
+        }
+        m_lastDriveVelocity = velocity;
+        return speeds;
+    }
+
+    /**
+     * Apply the latest module setpoints. Runs on the control loop thread.
+     */
+    public void applyModuleSetpoints() {
+        SwerveModuleState[] states = m_moduleSetpoints.get();
+        if (states == null) {
+            if (!m_modulesStopped) {
+                stopModules();
+                m_modulesStopped = true;
+            }
+            return;
+        }
+        m_modulesStopped = false;
+        setModuleStates(states);
+    }
+
+    @Override
+    public boolean isDemandingPower() {
+        return m_moduleSetpoints.get() != null;
+    }
+
+    @Override
+    public double getThermalDerate() {
+        return Math.min(
+                Math.min(m_frontLeft.getDriveThermalDerate(), m_frontRight.getDriveThermalDerate()),
+                Math.min(m_backLeft.getDriveThermalDerate(), m_backRight.getDriveThermalDerate()));
+    }
+
+    @Override
+    public void applyPowerBudget(int currentLimitAmps, double compensationVolts) {
+        m_frontLeft.setDrivePowerLimits(currentLimitAmps, compensationVolts);
+        m_frontRight.setDrivePowerLimits(currentLimitAmps, compensationVolts);
+        m_backLeft.setDrivePowerLimits(currentLimitAmps, compensationVolts);
+        m_backRight.setDrivePowerLimits(currentLimitAmps, compensationVolts);
+    }
+
+    private void setModuleStates(SwerveModuleState[] states) {
+        m_frontLeft.setDesiredState(states[0]);
+        m_frontRight.setDesiredState(states[1]);
+        m_backLeft.setDesiredState(states[2]);
+        m_backRight.setDesiredState(states[3]);
+    }
+
+    /**
+     * Run the drive math without handing any setpoints to the modules, for warm-up.
+     */
+    public void setOutputSuppressed(boolean suppressed) {
+        m_outputSuppressed = suppressed;
+        m_lastDriveTime = Double.NaN;
     }
 
     /**
@@ -278,12 +420,50 @@ public class SwerveDriveSystem extends SubsystemBase {
      * Update the field relative position of the robot.
      */
     public void updateOdometry() {
-        m_odometry.update(getRotation2d(), new SwerveModulePosition[] {
-                m_frontLeft.getPosition(),
-                m_frontRight.getPosition(),
-                m_backLeft.getPosition(),
-                m_backRight.getPosition()
-        });
+        // A slipping wheel's encoder overstates its travel, so it is replaced with the travel
+        // the other modules and the gyro imply.
+        for (int i = 0; i < m_modules.length; i++) {
+            double raw = m_modules[i].getDriveEncoderPosition();
+            double delta = raw - m_lastRawDistances[i];
+            m_lastRawDistances[i] = raw;
+            if (m_traction.isSlipping(i)) {
+                delta = m_traction.getImpliedSpeed(i) * m_tractionDt;
+            }
+            m_odometryDistances[i] += delta;
+        }
+        m_odometry.update(getRotation2d(), getModulePositions());
+    }
+
+    /**
+     * Check every module for slip against the rest of the robot, and scale down the drive output
+     * of any module that is slipping.
+     */
+    public void updateTraction() {
+        double now = Timer.getFPGATimestamp();
+        Rotation2d yaw = getRotation2d();
+        m_tractionDt = Double.isNaN(m_lastTractionTime) ? 0 : now - m_lastTractionTime;
+        double omega = m_tractionDt > 0
+                ? yaw.minus(m_lastYaw).getRadians() / m_tractionDt
+                : 0;
+        m_lastTractionTime = now;
+        m_lastYaw = yaw;
+
+        m_traction.update(getModuleStates(), omega);
+        for (int i = 0; i < m_modules.length; i++) {
+            double scale = m_modules[i].getTractionScale();
+            if (m_traction.isSlipping(i)) {
+                scale = Math.max(TractionConstants.minTractionScale,
+                        scale - TractionConstants.tractionScaleStep);
+            }
+            else {
+                scale = Math.min(1, scale + TractionConstants.tractionRecoveryStep);
+            }
+            m_modules[i].setTractionScale(scale);
+        }
+    }
+
+    public boolean isModuleSlipping(int module) {
+        return m_traction.isSlipping(module);
     }
 
     public double getxPosition() {
@@ -359,39 +539,34 @@ public class SwerveDriveSystem extends SubsystemBase {
         m_status = status;
     }
 
-    /**
-     * Read the PID values from the Shuffleboard.
-     */
-    public void updatePidFromShuffleBoard() {
-        if (isPIDTuning) {
-            double pidDriveP = m_getPidDriveP.getDouble(SwerveModule.pidDriveP);
-            double pidDriveD = m_getPidDriveD.getDouble(SwerveModule.pidDriveD);
-
-            @SuppressWarnings("VariableDeclarationUsageDistance")
-            double pidTurnP = m_getPidTurnP.getDouble(SwerveModule.pidTurnP);
-
-            @SuppressWarnings("VariableDeclarationUsageDistance")
-            double pidTurnD = m_getPidTurnD.getDouble(SwerveModule.pidTurnD);
-
-            m_frontLeft.updateDrivePid(pidDriveP, pidDriveD);
-            m_frontRight.updateDrivePid(pidDriveP, pidDriveD);
-            m_backLeft.updateDrivePid(pidDriveP, pidDriveD);
-            m_backRight.updateDrivePid(pidDriveP, pidDriveD);
+    private void applyDrivePid() {
+        double pidDriveP = m_pidDriveP.get();
+        double pidDriveD = m_pidDriveD.get();
+        m_frontLeft.updateDrivePid(pidDriveP, pidDriveD);
+        m_frontRight.updateDrivePid(pidDriveP, pidDriveD);
+        m_backLeft.updateDrivePid(pidDriveP, pidDriveD);
+        m_backRight.updateDrivePid(pidDriveP, pidDriveD);
+    }
 
-            m_frontLeft.updateTurnPid(pidTurnP, pidTurnD);
-            m_frontRight.updateTurnPid(pidTurnP, pidTurnD);
-            m_backLeft.updateTurnPid(pidTurnP, pidTurnD);
-            m_backRight.updateTurnPid(pidTurnP, pidTurnD);
-        }
+    private void applyTurnPid() {
+        double pidTurnP = m_pidTurnP.get();
+        double pidTurnD = m_pidTurnD.get();
+        m_frontLeft.updateTurnPid(pidTurnP, pidTurnD);
+        m_frontRight.updateTurnPid(pidTurnP, pidTurnD);
+        m_backLeft.updateTurnPid(pidTurnP, pidTurnD);
+        m_backRight.updateTurnPid(pidTurnP, pidTurnD);
     }
 
+    /**
+     * Module positions as used by odometry, with slipping samples replaced.
+     */
     public SwerveModulePosition[] getModulePositions() {
-        return new SwerveModulePosition[] {
-                m_frontLeft.getPosition(),
-                m_frontRight.getPosition(),
-                m_backLeft.getPosition(),
-                m_backRight.getPosition(),
-        };
+        SwerveModulePosition[] positions = new SwerveModulePosition[m_modules.length];
+        for (int i = 0; i < m_modules.length; i++) {
+            positions[i] = new SwerveModulePosition(m_odometryDistances[i],
+                    new Rotation2d(m_modules[i].getTurnEncoderValue()));
+        }
+        return positions;
     }
 
     public SwerveModuleState[] getModuleStates() {
@@ -411,29 +586,83 @@ public class SwerveDriveSystem extends SubsystemBase {
         return m_frontLeftLocation.getNorm();
     }
 
+    /**
+     * Drive at the given robot-relative speeds, with omega in radians per second.
+     */
     public void driveFromChassisSpeeds(ChassisSpeeds chassisSpeeds) {
         drive(
                 chassisSpeeds.vxMetersPerSecond,
                 chassisSpeeds.vyMetersPerSecond,
-                chassisSpeeds.omegaRadiansPerSecond);
+                chassisSpeeds.omegaRadiansPerSecond / m_maxAngularSpeed,
+                false);
     }
 
     public Pose2d getPoseMeters() {
         return m_odometry.getPoseMeters();
     }
 
+    /**
+     * Reset the odometry to the given field pose, keeping the current gyro reading.
+     */
+    public void resetPose(Pose2d pose) {
+        m_odometry.resetPosition(getRotation2d(), getModulePositions(), pose);
+        m_poseHistory.clear();
+    }
+
+    /**
+     * Field pose the robot had at the given FPGA time, interpolated from recent history.
+     */
+    public Pose2d getPoseAt(double timestamp) {
+        return m_poseHistory.getSample(timestamp).orElse(getPoseMeters());
+    }
+
+    public Rotation2d getHeadingAt(double timestamp) {
+        return getPoseAt(timestamp).getRotation();
+    }
+
+    /**
+     * Robot velocity in field coordinates.
+     */
+    public ChassisSpeeds getFieldSpeeds() {
+        return ChassisSpeeds.fromRobotRelativeSpeeds(getSpeeds(), getPoseMeters().getRotation());
+    }
+
     @Override
     public void periodic() {
-        updatePidFromShuffleBoard();
+        updateTraction();
         updateOdometry();
+        m_poseHistory.addSample(Timer.getFPGATimestamp(), getPoseMeters());
+        m_frontLeft.updateThermal();
+        m_frontRight.updateThermal();
+        m_backLeft.updateThermal();
+        m_backRight.updateThermal();
         // Shuffleboard.getTab("Swerve").add("X Pose Meters", m_odometry.getPoseMeters().getX());
 
     }
 
+    @Override
+    public void simulationPeriodic() {
+        double dt = SimConstants.loopPeriodSeconds;
+        m_frontLeft.simulationPeriodic(dt);
+        m_frontRight.simulationPeriodic(dt);
+        m_backLeft.simulationPeriodic(dt);
+        m_backRight.simulationPeriodic(dt);
+
+        // Integrate the simulated module motion into the Pigeon2 yaw.
+        m_simYawDegrees += Math.toDegrees(getSpeeds().omegaRadiansPerSecond * dt);
+        m_gyro.getSimState().setRawYaw(m_simYawDegrees);
+    }
+
     /**
-     * Stop the swerve drive system.
+     * Stop the swerve drive system. The control loop stops the modules on its next run.
      */
     public void stopSystem() {
+        if (!m_outputSuppressed) {
+            m_moduleSetpoints.set(null);
+        }
+    }
+
+    private void stopModules() {
         m_frontLeft.stopSystem();
         m_frontRight.stopSystem();
         m_backLeft.stopSystem();
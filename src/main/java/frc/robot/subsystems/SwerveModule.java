@@ -16,11 +16,18 @@ import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.shuffleboard.BuiltInLayouts;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.Constants.ControlLoopConstants;
+import frc.robot.Constants.SimConstants;
 import frc.robot.Constants.SwerveSystemConstants;
 import frc.robot.util.AppliedEncoder;
+import frc.robot.util.MotorOutput;
+import frc.robot.util.MotorThermalModel;
 
 /**
  * SwerveModule.
@@ -36,6 +43,10 @@ public class SwerveModule {
 
     private final CANSparkMax m_driveMotor;
     private final CANSparkMax m_turningMotor;
+    private final MotorOutput m_driveOutput;
+    private final MotorOutput m_turningOutput;
+    private final MotorThermalModel m_driveThermal;
+    private final MotorThermalModel m_turningThermal;
 
     private final AppliedEncoder m_turningAbsoluteEncoder;
     private final RelativeEncoder m_driveRelativeEncoder;
@@ -50,17 +61,38 @@ public class SwerveModule {
     public static final double pidTurnD = SwerveSystemConstants.turningPID_D;
 
     private final double m_offSet;
-    private double m_driveSetPoint = 0;
-    private double m_turnSetPoint = 0;
+    private volatile double m_driveSetPoint = 0;
+    private volatile double m_turnSetPoint = 0;
 
+    // Runs on the control loop, so the D and I terms use its period rather than the robot loop's.
     private final PIDController m_drivePidController = new PIDController(pidDriveP, pidDriveI,
-            pidDriveD);
+            pidDriveD, ControlLoopConstants.periodSeconds);
 
     private final SparkPIDController m_turnPidController;
 
     private final SimpleMotorFeedforward m_driveFeedforward = new SimpleMotorFeedforward(
             SwerveSystemConstants.drivingFeedForward_S, SwerveSystemConstants.drivingFeedForward_V);
 
+    // Physics models standing in for the motors and encoders. Only created in simulation.
+    private DCMotorSim m_driveSim;
+    private DCMotorSim m_turnSim;
+    private PIDController m_turnSimPid;
+    private volatile double m_driveVoltage = 0;
+    private volatile boolean m_stopped = true;
+
+    // Drive voltage ceiling, lowered by the power budget when the drivetrain is squeezed.
+    private volatile double m_maxDriveVoltage = 12 * maxOutput;
+
+    // Drive output scale set by traction control, lowered while the wheel slips.
+    private volatile double m_tractionScale = 1;
+
+    // Gains from the dashboard, picked up by the control loop thread on its next run. The turn
+    // gains are SparkMax parameter writes, which must not race the control thread's setReference.
+    private volatile double m_pendingDriveP = Double.NaN;
+    private volatile double m_pendingDriveD = Double.NaN;
+    private volatile double m_pendingTurnP = Double.NaN;
+    private volatile double m_pendingTurnD = Double.NaN;
+
     /**
      * Constructor.
      */
@@ -72,6 +104,11 @@ public class SwerveModule {
         m_offSet = offSet;
         m_driveMotor = new CANSparkMax(driveMotorId, MotorType.kBrushless);
         m_turningMotor = new CANSparkMax(turningMotorId, MotorType.kBrushless);
+        m_driveOutput = new MotorOutput("Swerve Drive " + driveMotorId, m_driveMotor);
+        m_turningOutput = new MotorOutput("Swerve Turn " + turningMotorId, m_turningMotor);
+        m_driveThermal = new MotorThermalModel("Swerve Drive " + driveMotorId, m_driveMotor);
+        m_turningThermal = new MotorThermalModel("Swerve Turn " + turningMotorId,
+                m_turningMotor);
 
         m_driveMotor.restoreFactoryDefaults();
         m_turningMotor.restoreFactoryDefaults();
@@ -106,6 +143,17 @@ public class SwerveModule {
         m_turnPidController.setPositionPIDWrappingEnabled(true);
         m_turnPidController.setPositionPIDWrappingMinInput(0);
         m_turnPidController.setPositionPIDWrappingMaxInput(Math.PI * 2);
+
+        if (RobotBase.isSimulation()) {
+            m_driveSim = new DCMotorSim(DCMotor.getNEO(1), 1 / driveGearRatio,
+                    SimConstants.driveMomentOfInertia);
+            m_turnSim = new DCMotorSim(DCMotor.getNEO(1), turnGearRatio,
+                    SimConstants.turnMomentOfInertia);
+            // Stands in for the SparkMax onboard position PID. Its D term acts on a 1 ms sample
+            // period, so scale it to seconds.
+            m_turnSimPid = new PIDController(pidTurnP, 0, pidTurnD * 0.001);
+            m_turnSimPid.enableContinuousInput(0, Math.PI * 2);
+        }
     }
 
     public SwerveModuleState getState() {
@@ -155,9 +203,21 @@ public class SwerveModule {
     }
 
     /**
-     * Set the desired state of the swerve module.
+     * Set the desired state of the swerve module. Only called from the control loop thread, which
+     * owns the drive PID and the motor outputs.
      */
     public void setDesiredState(SwerveModuleState desiredState) {
+        if (!Double.isNaN(m_pendingDriveP)) {
+            m_drivePidController.setP(m_pendingDriveP);
+            m_drivePidController.setD(m_pendingDriveD);
+            m_pendingDriveP = Double.NaN;
+        }
+        if (!Double.isNaN(m_pendingTurnP)) {
+            m_turnPidController.setP(m_pendingTurnP);
+            m_turnPidController.setD(m_pendingTurnD);
+            m_pendingTurnP = Double.NaN;
+        }
+
         SwerveModuleState state = SwerveModuleState.optimize(
                 desiredState,
                 Rotation2d.fromRadians(getTurnEncoderValue()));
@@ -166,24 +226,64 @@ public class SwerveModule {
                 .calculate(m_turningAbsoluteEncoder.getRate(), state.speedMetersPerSecond);
 
         final double driveFeedforward = m_driveFeedforward.calculate(state.speedMetersPerSecond);
-        m_turnPidController.setReference(state.angle.getRadians(), ControlType.kPosition);
 
-        double voltage = (driveOutput + driveFeedforward);
-        voltage = MathUtil.clamp(voltage, -12 * maxOutput, 12 * maxOutput);
-        m_driveMotor.setVoltage(voltage);
+        double voltage = (driveOutput + driveFeedforward) * m_tractionScale;
+        voltage = MathUtil.clamp(voltage, -m_maxDriveVoltage, m_maxDriveVoltage);
+        m_turningOutput.setReference(state.angle.getRadians(), ControlType.kPosition);
+        m_driveOutput.setVoltage(voltage);
+        m_driveVoltage = voltage;
+        m_stopped = false;
 
         m_driveSetPoint = state.speedMetersPerSecond;
         m_turnSetPoint = state.angle.getRadians();
     }
 
+    /**
+     * Set the drive motor current limit and the drive voltage ceiling.
+     */
+    public void setDrivePowerLimits(int currentLimitAmps, double maxVoltage) {
+        m_driveMotor.setSmartCurrentLimit(currentLimitAmps);
+        m_maxDriveVoltage = maxVoltage * maxOutput;
+    }
+
+    public void setTractionScale(double scale) {
+        m_tractionScale = scale;
+    }
+
+    public double getTractionScale() {
+        return m_tractionScale;
+    }
+
+    /**
+     * Advance the thermal estimates of both motors.
+     */
+    public void updateThermal() {
+        m_driveThermal.update();
+        m_turningThermal.update();
+    }
+
+    /**
+     * Drive motor derating. The steering motors are only watched for warnings, since they run
+     * at a low fixed limit.
+     */
+    public double getDriveThermalDerate() {
+        return m_driveThermal.getDerate();
+    }
+
+    /**
+     * Queue new drive gains for the control loop thread to apply.
+     */
     public void updateDrivePid(double pidP, double pidD) {
-        m_drivePidController.setP(pidP);
-        m_drivePidController.setD(pidD);
+        m_pendingDriveD = pidD;
+        m_pendingDriveP = pidP;
     }
 
+    /**
+     * Queue new turn gains for the control loop thread to apply.
+     */
     public void updateTurnPid(double pidP, double pidD) {
-        m_turnPidController.setP(pidP);
-        m_turnPidController.setD(pidD);
+        m_pendingTurnD = pidD;
+        m_pendingTurnP = pidP;
     }
 
     public double getOffset() {
@@ -191,11 +291,14 @@ public class SwerveModule {
     }
 
     public double getTurnEncoderValue() {
+        if (m_turnSim != null) {
+            return m_turnSim.getAngularPositionRad();
+        }
         return m_turnRelativeEncoder.getPosition();
     }
 
     public double getTurnEncoderRadians() {
-        return m_turnRelativeEncoder.getPosition() % (Math.PI * 2);
+        return getTurnEncoderValue() % (Math.PI * 2);
     }
 
     public double getRawTurnEncoderRadians() {
@@ -204,15 +307,43 @@ public class SwerveModule {
     }
 
     public double getDriveEncoderPosition() {
+        if (m_driveSim != null) {
+            return m_driveSim.getAngularPositionRad() * wheelRadius;
+        }
         return m_driveRelativeEncoder.getPosition();
     }
 
     public double getDriveEncoderVelocity() {
+        if (m_driveSim != null) {
+            return m_driveSim.getAngularVelocityRadPerSec() * wheelRadius;
+        }
         return m_driveRelativeEncoder.getVelocity();
     }
 
+    /**
+     * Step the drive and steer physics models by one loop using the last commanded outputs.
+     */
+    public void simulationPeriodic(double dtSeconds) {
+        double turnVoltage = 0;
+        double driveVoltage = 0;
+        if (!m_stopped) {
+            turnVoltage = MathUtil.clamp(
+                    m_turnSimPid.calculate(getTurnEncoderValue(), m_turnSetPoint) * 12, -12, 12);
+            driveVoltage = m_driveVoltage;
+        }
+        m_turnSim.setInputVoltage(turnVoltage);
+        m_driveSim.setInputVoltage(driveVoltage);
+        m_turnSim.update(dtSeconds);
+        m_driveSim.update(dtSeconds);
+    }
+
+    /**
+     * Stop both motors. Only called from the control loop thread.
+     */
     public void stopSystem() {
-        m_driveMotor.stopMotor();
-        m_turningMotor.stopMotor();
+        m_driveOutput.stopMotor();
+        m_turningOutput.stopMotor();
+        m_driveVoltage = 0;
+        m_stopped = true;
     }
 }
@@ -1,5 +1,12 @@
 package frc.robot.subsystems;
 
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.apriltag.AprilTagFields;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
@@ -9,6 +16,13 @@ import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
 import frc.robot.Constants.VisionConstants;
+import frc.robot.Constants.VisionConstants.CropConstants;
+import frc.robot.LimelightHelpers;
+import frc.robot.util.PipelineManager;
+import frc.robot.util.PipelineManager.Pipeline;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 public class VisionSystem extends SubsystemBase {
     private final double limelightMountAngleRadiansY = VisionConstants.limelightMountAngleRadiansY;
@@ -23,9 +37,31 @@ public class VisionSystem extends SubsystemBase {
     private NetworkTableEntry tableY = limelightTable.getEntry("ty");
     private NetworkTableEntry tableArea = limelightTable.getEntry("ta");
     private NetworkTableEntry tableID = limelightTable.getEntry("tid");
+    private NetworkTableEntry tablePipelineLatency = limelightTable.getEntry("tl");
+    private NetworkTableEntry tableCaptureLatency = limelightTable.getEntry("cl");
+    private NetworkTableEntry tableHeartbeat = limelightTable.getEntry("hb");
 
     private final double EPSILON = 0.0000001;
 
+    private final AprilTagFieldLayout m_tagLayout = AprilTagFieldLayout.loadField(
+            AprilTagFields.k2024Crescendo);
+
+    private final PipelineManager m_pipelines = new PipelineManager(
+            VisionConstants.limelightName);
+
+    // Crop window tracking. Coordinates are normalized, with the full frame from -1 to 1.
+    private Supplier<ChassisSpeeds> m_robotSpeeds = ChassisSpeeds::new;
+    // Tags the crop window may follow. Any other tag counts as no target, so the window stays on
+    // or widens back to the full frame rather than locking onto it.
+    private List<Double> m_cropTagIDs = List.of();
+    private boolean m_cropTracking = false;
+    private double m_cropCenterX = 0;
+    private double m_cropCenterY = 0;
+    private double m_cropHalfWidth = 1;
+    private double m_cropHalfHeight = 1;
+    private double[] m_sentCrop = new double[4];
+    private int m_lostLoops = 0;
+
     public VisionSystem() {
         displayToShuffleBoard();
     }
@@ -44,6 +80,10 @@ public class VisionSystem extends SubsystemBase {
         visionLayout.addDouble("X tangent", () -> Math.tan(getXRadians()));
         visionLayout.addDouble("Y tangent", () -> Math.tan(getYRadians()));
         visionLayout.addDouble("ID", () -> getID());
+        visionLayout.addString("Pipeline", () -> m_pipelines.getRequested().toString());
+        visionLayout.addBoolean("Pipeline Settled", () -> m_pipelines.isSettled());
+        visionLayout.addBoolean("Crop Tracking", () -> m_cropTracking);
+        visionLayout.addDouble("Crop Half Width", () -> m_cropHalfWidth);
     }
 
     /**
@@ -93,6 +133,46 @@ public class VisionSystem extends SubsystemBase {
         }
     }
 
+    public boolean isSpeakerDetected() {
+        return isDetected() && VisionConstants.speakerTagIDs.contains(getID());
+    }
+
+    /**
+     * Time from image capture to the result being published, in seconds.
+     */
+    public double getLatencySeconds() {
+        return (tablePipelineLatency.getDouble(0) + tableCaptureLatency.getDouble(0)) / 1000;
+    }
+
+    /**
+     * FPGA time, in seconds, at which the image behind the current result was captured. Taken
+     * from the heartbeat, which changes every frame even when the target values do not.
+     */
+    public double getCaptureTimestamp() {
+        return tableHeartbeat.getLastChange() / 1e6 - getLatencySeconds();
+    }
+
+    /**
+     * Angle from the robot heading to the tag, in radians, counterclockwise positive.
+     */
+    public double getTargetBearingRadians() {
+        return -(limelightMountAngleRadiansX + getXRadians());
+    }
+
+    /**
+     * Position of the tag relative to the robot, X forward and Y to the left, in meters.
+     */
+    public Translation2d getTargetTranslation() {
+        return new Translation2d(getDistanceMetersY(), -getDistanceMetersX());
+    }
+
+    /**
+     * Field pose of the tag with the given ID, facing out of the tag, if it is on this field.
+     */
+    public Optional<Pose2d> getTagPose(int id) {
+        return m_tagLayout.getTagPose(id).map(Pose3d::toPose2d);
+    }
+
     /**
      * Distance to April tag in meters Y.
      */
@@ -113,10 +193,150 @@ public class VisionSystem extends SubsystemBase {
         return distanceFromLimelightToGoalMeters;
     }
 
+    /**
+     * Set the source of the robot-relative speeds used to predict where the target moves.
+     */
+    public void setRobotSpeedsSupplier(Supplier<ChassisSpeeds> robotSpeeds) {
+        m_robotSpeeds = robotSpeeds;
+    }
+
+    /**
+     * Switch to the single-tag aiming pipeline, with the crop window tracking any of the given
+     * tags once the switch has taken effect.
+     */
+    public void startAiming(List<Double> tagIDs) {
+        m_cropTagIDs = tagIDs;
+        m_pipelines.request(Pipeline.AIMING);
+    }
+
+    /**
+     * Switch back to the localization pipeline and the full frame.
+     */
+    public void stopAiming() {
+        m_cropTagIDs = List.of();
+        m_pipelines.request(Pipeline.LOCALIZATION);
+    }
+
+    /**
+     * Whether the current result came from the requested pipeline, rather than from the old one
+     * during a switch.
+     */
+    public boolean isFrameValid() {
+        return m_pipelines.isFrameValid(getCaptureTimestamp());
+    }
+
+    public double getFps(Pipeline pipeline) {
+        return m_pipelines.getFps(pipeline);
+    }
+
+    /**
+     * Crop the camera to a window around the target, so it processes fewer pixels and runs at a
+     * higher frame rate. Turn off to go back to the full frame.
+     */
+    private void setCropTracking(boolean enabled) {
+        m_cropTracking = enabled;
+        m_lostLoops = 0;
+        if (!enabled) {
+            m_cropCenterX = 0;
+            m_cropCenterY = 0;
+            m_cropHalfWidth = 1;
+            m_cropHalfHeight = 1;
+            sendCrop();
+        }
+    }
+
+    public boolean isCropTracking() {
+        return m_cropTracking;
+    }
+
+    /**
+     * Move the crop window to where the target should appear in the next frame, or widen it
+     * while the target is lost or only an unwanted tag is in view.
+     */
+    private void updateCrop() {
+        if (!isDetected() || !m_cropTagIDs.contains(getID())) {
+            m_lostLoops++;
+            if (m_lostLoops > CropConstants.lostLoopsBeforeWidening) {
+                m_cropHalfWidth = Math.min(1, m_cropHalfWidth * CropConstants.wideningFactor);
+                m_cropHalfHeight = Math.min(1, m_cropHalfHeight * CropConstants.wideningFactor);
+                if (m_cropHalfWidth >= 1 && m_cropHalfHeight >= 1) {
+                    m_cropCenterX = 0;
+                    m_cropCenterY = 0;
+                }
+            }
+            sendCrop();
+            return;
+        }
+        m_lostLoops = 0;
+
+        // Rate of change of tx and ty from the robot's motion relative to the target, with the
+        // target at x forward and y left of the camera.
+        ChassisSpeeds speeds = m_robotSpeeds.get();
+        Translation2d target = getTargetTranslation();
+        double forward = target.getX();
+        double left = target.getY();
+        double forwardRate = -speeds.vxMetersPerSecond
+                + speeds.omegaRadiansPerSecond * left;
+        double leftRate = -speeds.vyMetersPerSecond
+                - speeds.omegaRadiansPerSecond * forward;
+        double bearingRate = (forward * leftRate - left * forwardRate)
+                / Math.max(forward * forward + left * left, EPSILON);
+        double height = aprilTagHeightMeters - limelightLensHeightMeters;
+        double elevationRate = -height * forwardRate
+                / Math.max(forward * forward + height * height, EPSILON);
+
+        // tx is positive to the right, against the bearing.
+        double lookahead = getLatencySeconds() + CropConstants.lookaheadSeconds;
+        double shiftX = -Math.toDegrees(bearingRate) * lookahead
+                / (VisionConstants.horizontalFovDegrees / 2);
+        double shiftY = Math.toDegrees(elevationRate) * lookahead
+                / (VisionConstants.verticalFovDegrees / 2);
+        m_cropCenterX = getX() / (VisionConstants.horizontalFovDegrees / 2) + shiftX;
+        m_cropCenterY = getY() / (VisionConstants.verticalFovDegrees / 2) + shiftY;
+
+        // The tag's half-size in normalized coordinates, from its share of the image area.
+        double tagHalfSize = Math.sqrt(getArea() / 100);
+        m_cropHalfWidth = Math.min(1, CropConstants.minHalfSize
+                + CropConstants.tagSizeMultiple * tagHalfSize + Math.abs(shiftX));
+        m_cropHalfHeight = Math.min(1, CropConstants.minHalfSize
+                + CropConstants.tagSizeMultiple * tagHalfSize + Math.abs(shiftY));
+        sendCrop();
+    }
+
+    private void sendCrop() {
+        double[] crop = {
+                MathUtil.clamp(m_cropCenterX - m_cropHalfWidth, -1, 1),
+                MathUtil.clamp(m_cropCenterX + m_cropHalfWidth, -1, 1),
+                MathUtil.clamp(m_cropCenterY - m_cropHalfHeight, -1, 1),
+                MathUtil.clamp(m_cropCenterY + m_cropHalfHeight, -1, 1),
+        };
+        boolean changed = false;
+        for (int i = 0; i < crop.length; i++) {
+            changed |= Math.abs(crop[i] - m_sentCrop[i]) >= CropConstants.resendThreshold;
+        }
+        if (!changed) {
+            return;
+        }
+        LimelightHelpers.setCropWindow(VisionConstants.limelightName,
+                crop[0], crop[1], crop[2], crop[3]);
+        m_sentCrop = crop;
+    }
+
     @Override
     public void periodic() {
+        m_pipelines.update();
+        boolean cropTracking = m_pipelines.getRequested() == Pipeline.AIMING
+                && m_pipelines.isSettled();
+        if (cropTracking != m_cropTracking) {
+            setCropTracking(cropTracking);
+        }
+        if (m_cropTracking) {
+            updateCrop();
+        }
     }
 
     public void stopSystem() {
+        stopAiming();
+        setCropTracking(false);
     }
 }
@@ -0,0 +1,141 @@
+package frc.robot.util;
+
+import com.pathplanner.lib.path.PathPlannerPath;
+
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Loads every deploy path and builds its autonomous command once, on a background thread, so
+ * starting autonomous does no file I/O, JSON parsing or class loading. Paths with an up to date
+ * compiled trajectory use it; the rest are parsed and generated here instead. A path that fails
+ * to load is reported and left out rather than taking the other autos down with it.
+ */
+public class AutoRegistry {
+    private final SendableChooser<String> m_chooser = new SendableChooser<String>();
+    private final Function<PathPlannerPath, Command> m_pathFollower;
+    private final Function<CompiledTrajectory, Command> m_trajectoryFollower;
+    private final List<String> m_names;
+    private CompletableFuture<Map<String, Command>> m_autos;
+
+    /**
+     * Constructor. Only lists the path files; nothing is parsed until {@link #preload()}.
+     */
+    public AutoRegistry(
+            Function<PathPlannerPath, Command> pathFollower,
+            Function<CompiledTrajectory, Command> trajectoryFollower) {
+        m_pathFollower = pathFollower;
+        m_trajectoryFollower = trajectoryFollower;
+        m_names = listPathNames();
+        for (String name : m_names) {
+            if (name.equals(m_names.get(0))) {
+                m_chooser.setDefaultOption(name, name);
+            }
+            else {
+                m_chooser.addOption(name, name);
+            }
+        }
+    }
+
+    /**
+     * Names of the paths under deploy/pathplanner/paths, sorted.
+     */
+    public static List<String> listPathNames() {
+        ArrayList<String> names = new ArrayList<String>();
+        File[] files = new File(Filesystem.getDeployDirectory(), "pathplanner/paths")
+                .listFiles((dir, name) -> name.endsWith(".path"));
+        if (files != null) {
+            for (File file : files) {
+                names.add(file.getName().replace(".path", ""));
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Start loading and building every auto in the background. Safe to call more than once.
+     */
+    public synchronized void preload() {
+        if (m_autos == null) {
+            m_autos = CompletableFuture.supplyAsync(this::buildAll);
+        }
+    }
+
+    private Map<String, Command> buildAll() {
+        HashMap<String, Command> autos = new HashMap<String, Command>();
+        for (String name : m_names) {
+            Command auto = build(name);
+            if (auto != null) {
+                autos.put(name, auto);
+            }
+        }
+        return autos;
+    }
+
+    /**
+     * Build the command for one path, or return null and report the error if it fails to load.
+     */
+    private Command build(String name) {
+        try {
+            CompiledTrajectory compiled = CompiledTrajectory.load(name);
+            if (compiled != null) {
+                return m_trajectoryFollower.apply(compiled);
+            }
+
+            PathPlannerPath path = PathPlannerPath.fromPathFile(name);
+            // Generate the trajectory once so the generator classes are loaded and warm.
+            path.getTrajectory(new ChassisSpeeds(),
+                    path.getPreviewStartingHolonomicPose().getRotation());
+            return m_pathFollower.apply(path);
+        }
+        catch (RuntimeException e) {
+            DriverStation.reportError("Failed to load auto " + name + ": " + e.getMessage(),
+                    e.getStackTrace());
+            return null;
+        }
+    }
+
+    public synchronized boolean isReady() {
+        return m_autos != null && m_autos.isDone();
+    }
+
+    public SendableChooser<String> getChooser() {
+        return m_chooser;
+    }
+
+    /**
+     * The command for the selected auto. Never waits on preloading: if it has not finished yet,
+     * only the selected path is built, here and now.
+     */
+    public Command getSelected() {
+        preload();
+        String name = m_chooser.getSelected();
+        Command auto;
+        if (m_autos.isDone() && !m_autos.isCompletedExceptionally()) {
+            auto = m_autos.getNow(Map.of()).get(name);
+        }
+        else {
+            DriverStation.reportWarning("Autos not preloaded yet, building " + name
+                    + " on the main thread", false);
+            auto = name != null ? build(name) : null;
+        }
+        if (auto == null) {
+            DriverStation.reportWarning("No auto for " + name + ", running nothing", false);
+            return Commands.none();
+        }
+        return auto;
+    }
+}
@@ -0,0 +1,183 @@
+package frc.robot.util;
+
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.robot.Constants.TrajectoryConstants;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A trajectory pre-generated at build time into fixed-stride binary records and memory-mapped at
+ * runtime, so sampling needs no parsing and no allocation.
+ *
+ * <p>
+ * Layout, little-endian: a 32 byte header (magic, version, CRC32 of the source .path file, record
+ * count, record stride, sample period) followed by one record per sample period holding field X,
+ * field Y, field velocity X, field velocity Y and holonomic rotation, all doubles.
+ * </p>
+ */
+public class CompiledTrajectory {
+    private static final int magic = 0x4A545050; // "PPTJ"
+    private static final int version = 1;
+    private static final int headerBytes = 32;
+    private static final int fieldsPerRecord = 5;
+    private static final int recordBytes = fieldsPerRecord * Double.BYTES;
+
+    private final ByteBuffer m_buffer;
+    private final int m_count;
+    private final double m_dt;
+
+    /**
+     * One interpolated trajectory sample. Reused between calls to avoid allocation.
+     */
+    public static class Sample {
+        private double m_x;
+        private double m_y;
+        private double m_velocityX;
+        private double m_velocityY;
+        private double m_rotation;
+
+        public double getX() {
+            return m_x;
+        }
+
+        public double getY() {
+            return m_y;
+        }
+
+        public double getVelocityX() {
+            return m_velocityX;
+        }
+
+        public double getVelocityY() {
+            return m_velocityY;
+        }
+
+        /**
+         * Holonomic rotation in radians.
+         */
+        public double getRotation() {
+            return m_rotation;
+        }
+    }
+
+    private CompiledTrajectory(ByteBuffer buffer) {
+        m_buffer = buffer;
+        m_count = buffer.getInt(16);
+        m_dt = buffer.getDouble(24);
+    }
+
+    public static File getPathFile(String pathName) {
+        return new File(Filesystem.getDeployDirectory(), "pathplanner/paths/" + pathName + ".path");
+    }
+
+    public static File getCompiledFile(String pathName) {
+        return new File(Filesystem.getDeployDirectory(),
+                TrajectoryConstants.compiledDirectory + "/" + pathName + ".traj");
+    }
+
+    /**
+     * CRC32 of a file's bytes.
+     */
+    public static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(file.toPath()));
+        return crc.getValue();
+    }
+
+    /**
+     * Write a trajectory sampled at a fixed period.
+     */
+    public static void write(
+            PathPlannerTrajectory trajectory,
+            long checksum,
+            double dt,
+            File file) throws IOException {
+        int count = (int) Math.ceil(trajectory.getTotalTimeSeconds() / dt) + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(headerBytes + count * recordBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(magic).putInt(version).putLong(checksum).putInt(count)
+                .putInt(recordBytes).putDouble(dt);
+        for (int i = 0; i < count; i++) {
+            PathPlannerTrajectory.State state = trajectory.sample(i * dt);
+            buffer.putDouble(state.positionMeters.getX());
+            buffer.putDouble(state.positionMeters.getY());
+            buffer.putDouble(state.velocityMps * state.heading.getCos());
+            buffer.putDouble(state.velocityMps * state.heading.getSin());
+            buffer.putDouble(state.targetHolonomicRotation.getRadians());
+        }
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), buffer.array());
+    }
+
+    /**
+     * Map the compiled trajectory for a path. Returns null if it is missing, malformed, or was
+     * compiled from a different version of the path file, so the caller can fall back to runtime
+     * generation.
+     */
+    public static CompiledTrajectory load(String pathName) {
+        File compiled = getCompiledFile(pathName);
+        if (!compiled.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(compiled.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.limit() < headerBytes
+                    || buffer.getInt(0) != magic
+                    || buffer.getInt(4) != version
+                    || buffer.getInt(20) != recordBytes
+                    || buffer.getLong(8) != checksum(getPathFile(pathName))) {
+                return null;
+            }
+            CompiledTrajectory trajectory = new CompiledTrajectory(buffer);
+            if (trajectory.m_count < 1
+                    || buffer.limit() < headerBytes + trajectory.m_count * recordBytes) {
+                return null;
+            }
+            return trajectory;
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    public double getTotalTimeSeconds() {
+        return (m_count - 1) * m_dt;
+    }
+
+    private double read(int record, int field) {
+        return m_buffer.getDouble(headerBytes + record * recordBytes + field * Double.BYTES);
+    }
+
+    /**
+     * Interpolate the trajectory at the given time into the sample.
+     */
+    public void sample(double timeSeconds, Sample out) {
+        double index = MathUtil.clamp(timeSeconds / m_dt, 0, m_count - 1);
+        int low = (int) index;
+        int high = Math.min(low + 1, m_count - 1);
+        double t = index - low;
+
+        out.m_x = MathUtil.interpolate(read(low, 0), read(high, 0), t);
+        out.m_y = MathUtil.interpolate(read(low, 1), read(high, 1), t);
+        out.m_velocityX = MathUtil.interpolate(read(low, 2), read(high, 2), t);
+        out.m_velocityY = MathUtil.interpolate(read(low, 3), read(high, 3), t);
+        double rotation = read(low, 4);
+        out.m_rotation = rotation + MathUtil.angleModulus(read(high, 4) - rotation) * t;
+    }
+
+    public Pose2d getInitialPose() {
+        return new Pose2d(read(0, 0), read(0, 1), new Rotation2d(read(0, 4)));
+    }
+}
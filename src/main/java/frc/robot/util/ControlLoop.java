@@ -0,0 +1,139 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Threads;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs actuator control on its own real-time Notifier, apart from the command scheduler and
+ * telemetry in the main robot loop. Tasks should only read setpoints that commands hand over
+ * through volatile or atomic fields.
+ *
+ * <p>
+ * Loop timing is measured on the control thread and published from the main loop with
+ * {@link #publishStats()}.
+ * </p>
+ */
+public class ControlLoop {
+    /**
+     * Timing of the control loop over one statistics window.
+     */
+    public static final class Stats {
+        public final double maxJitterMs;
+        public final double meanJitterMs;
+        public final double maxRunMs;
+        public final int overruns;
+
+        Stats(double maxJitterMs, double meanJitterMs, double maxRunMs, int overruns) {
+            this.maxJitterMs = maxJitterMs;
+            this.meanJitterMs = meanJitterMs;
+            this.maxRunMs = maxRunMs;
+            this.overruns = overruns;
+        }
+    }
+
+    private final String m_name;
+    private final long m_periodMicros;
+    private final int m_priority;
+    private final int m_statsWindow;
+    private final CopyOnWriteArrayList<Runnable> m_tasks = new CopyOnWriteArrayList<Runnable>();
+    private final Notifier m_notifier = new Notifier(this::loop);
+    private final AtomicReference<Stats> m_stats = new AtomicReference<Stats>(
+            new Stats(0, 0, 0, 0));
+
+    // Only touched on the control thread.
+    private boolean m_priorityRaised = false;
+    private long m_lastStartMicros = 0;
+    private int m_count = 0;
+    private double m_maxJitterMs = 0;
+    private double m_sumJitterMs = 0;
+    private double m_maxRunMs = 0;
+    private int m_overruns = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param name        name of the thread and the dashboard folder for its statistics
+     * @param period      loop period in seconds
+     * @param priority    real-time priority of the control thread on the roboRIO
+     * @param statsWindow number of loops each published statistics window covers
+     */
+    public ControlLoop(String name, double period, int priority, int statsWindow) {
+        m_name = name;
+        m_periodMicros = (long) (period * 1e6);
+        m_priority = priority;
+        m_statsWindow = statsWindow;
+        m_notifier.setName(name);
+    }
+
+    /**
+     * Add a task to run every loop, in the order added.
+     */
+    public void addTask(Runnable task) {
+        m_tasks.add(task);
+    }
+
+    public void start() {
+        m_notifier.startPeriodic(m_periodMicros / 1e6);
+    }
+
+    public void stop() {
+        m_notifier.stop();
+    }
+
+    public Stats getStats() {
+        return m_stats.get();
+    }
+
+    /**
+     * Publish the latest statistics window. Call from the main robot loop.
+     */
+    public void publishStats() {
+        Stats stats = m_stats.get();
+        SmartDashboard.putNumber(m_name + "/Max Jitter ms", stats.maxJitterMs);
+        SmartDashboard.putNumber(m_name + "/Mean Jitter ms", stats.meanJitterMs);
+        SmartDashboard.putNumber(m_name + "/Max Run ms", stats.maxRunMs);
+        SmartDashboard.putNumber(m_name + "/Overruns", stats.overruns);
+    }
+
+    private void loop() {
+        // Raising the priority needs the roboRIO's real-time scheduler.
+        if (!m_priorityRaised && RobotBase.isReal()) {
+            Threads.setCurrentThreadPriority(true, m_priority);
+        }
+        m_priorityRaised = true;
+
+        long start = RobotController.getFPGATime();
+        for (Runnable task : m_tasks) {
+            task.run();
+        }
+        long end = RobotController.getFPGATime();
+
+        if (m_lastStartMicros != 0) {
+            double jitterMs = Math.abs(start - m_lastStartMicros - m_periodMicros) / 1000.0;
+            double runMs = (end - start) / 1000.0;
+            m_maxJitterMs = Math.max(m_maxJitterMs, jitterMs);
+            m_sumJitterMs += jitterMs;
+            m_maxRunMs = Math.max(m_maxRunMs, runMs);
+            if (end - start > m_periodMicros) {
+                m_overruns++;
+            }
+            m_count++;
+        }
+        m_lastStartMicros = start;
+
+        if (m_count >= m_statsWindow) {
+            m_stats.set(new Stats(m_maxJitterMs, m_sumJitterMs / m_count, m_maxRunMs,
+                    m_overruns));
+            m_count = 0;
+            m_maxJitterMs = 0;
+            m_sumJitterMs = 0;
+            m_maxRunMs = 0;
+            m_overruns = 0;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package frc.robot.util;
+
+/**
+ * Detects a note being pulled into the intake from the motor current signature. After the
+ * rollers spin up, a note shows as a current spike together with a drop in roller speed. Both
+ * have to hold for several consecutive samples, so a brief spike from a note glancing off the
+ * rollers does not count. The detection does not depend on any other note sensor, so it keeps
+ * working as a backup when that sensor fails.
+ */
+public class CurrentNoteDetector {
+    private final double m_spikeAmps;
+    private final double m_velocityDropFraction;
+    private final double m_spinUpSeconds;
+    private final int m_confirmSamples;
+    private final double m_baselineAlpha;
+
+    private double m_runStartTimestamp = Double.NaN;
+    private double m_baselineCurrent = 0;
+    private double m_baselineVelocity = 0;
+    private int m_confirmCount = 0;
+    private boolean m_detected = false;
+    private double m_detectTimestamp = Double.NaN;
+    private Runnable m_onNoteDetected = () -> {
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param spikeAmps current rise over the running baseline that counts as a note
+     * @param velocityDropFraction fraction of the baseline speed the rollers must lose
+     * @param spinUpSeconds time after the rollers start before detection is armed
+     * @param confirmSamples consecutive samples the signature must hold for
+     * @param baselineAlpha smoothing factor for the running current and speed baseline
+     */
+    public CurrentNoteDetector(
+            double spikeAmps,
+            double velocityDropFraction,
+            double spinUpSeconds,
+            int confirmSamples,
+            double baselineAlpha) {
+        m_spikeAmps = spikeAmps;
+        m_velocityDropFraction = velocityDropFraction;
+        m_spinUpSeconds = spinUpSeconds;
+        m_confirmSamples = confirmSamples;
+        m_baselineAlpha = baselineAlpha;
+    }
+
+    /**
+     * Feed one sample. Returns true once a note has been detected.
+     *
+     * @param current total roller current in amps
+     * @param velocity roller velocity, any unit
+     * @param running whether the rollers are being driven to intake
+     * @param timestampSeconds time the sample was taken
+     */
+    public synchronized boolean update(
+            double current,
+            double velocity,
+            boolean running,
+            double timestampSeconds) {
+        if (!running) {
+            m_runStartTimestamp = Double.NaN;
+            m_confirmCount = 0;
+            return m_detected;
+        }
+        if (m_detected) {
+            return true;
+        }
+
+        double speed = Math.abs(velocity);
+        if (Double.isNaN(m_runStartTimestamp)) {
+            m_runStartTimestamp = timestampSeconds;
+        }
+        if (timestampSeconds - m_runStartTimestamp < m_spinUpSeconds) {
+            // Inrush current while spinning up looks like a note, so only learn the baseline.
+            m_baselineCurrent = current;
+            m_baselineVelocity = speed;
+            return false;
+        }
+
+        if (current - m_baselineCurrent >= m_spikeAmps
+                && speed <= m_baselineVelocity * (1 - m_velocityDropFraction)) {
+            m_confirmCount++;
+            if (m_confirmCount >= m_confirmSamples) {
+                m_detected = true;
+                m_detectTimestamp = timestampSeconds;
+                m_onNoteDetected.run();
+            }
+        }
+        else {
+            m_confirmCount = 0;
+            m_baselineCurrent += m_baselineAlpha * (current - m_baselineCurrent);
+            m_baselineVelocity += m_baselineAlpha * (speed - m_baselineVelocity);
+        }
+        return m_detected;
+    }
+
+    /**
+     * Clear a detection, for example once the note has been fed to the shooter.
+     */
+    public synchronized void reset() {
+        m_detected = false;
+        m_detectTimestamp = Double.NaN;
+        m_runStartTimestamp = Double.NaN;
+        m_confirmCount = 0;
+    }
+
+    /**
+     * Set the action to run, on the sampling thread, when a note is detected.
+     */
+    public synchronized void setOnNoteDetected(Runnable onNoteDetected) {
+        m_onNoteDetected = onNoteDetected;
+    }
+
+    public synchronized boolean isNoteDetected() {
+        return m_detected;
+    }
+
+    public synchronized double getDetectTimestamp() {
+        return m_detectTimestamp;
+    }
+}
@@ -0,0 +1,54 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import frc.robot.Constants.SwerveSystemConstants;
+
+/**
+ * Turns the drivetrain to a field heading along a profile limited to the drivetrain's angular
+ * speed and acceleration, with feedback on top of the profile velocity.
+ */
+public class HeadingController {
+    private final ProfiledPIDController m_pid;
+
+    /**
+     * Constructor.
+     *
+     * @param p radians per second per radian of heading error
+     * @param i integral gain
+     * @param d derivative gain
+     */
+    public HeadingController(double p, double i, double d) {
+        m_pid = new ProfiledPIDController(p, i, d, new TrapezoidProfile.Constraints(
+                SwerveSystemConstants.maxAngularSpeed,
+                SwerveSystemConstants.maxAngularAcceleration));
+        m_pid.enableContinuousInput(-Math.PI, Math.PI);
+    }
+
+    /**
+     * Start the profile from the robot's current heading and turn rate.
+     */
+    public void reset(Rotation2d heading, double omegaRadiansPerSecond) {
+        m_pid.reset(heading.getRadians(), omegaRadiansPerSecond);
+    }
+
+    /**
+     * Rotation input for {@link frc.robot.subsystems.SwerveDriveSystem#drive} that turns towards
+     * a fixed goal heading.
+     */
+    public double calculate(Rotation2d heading, Rotation2d goal) {
+        return calculate(heading, goal, 0);
+    }
+
+    /**
+     * Rotation input for {@link frc.robot.subsystems.SwerveDriveSystem#drive} that tracks a goal
+     * heading turning at the given rate.
+     */
+    public double calculate(Rotation2d heading, Rotation2d goal, double goalVelocity) {
+        double omega = m_pid.calculate(heading.getRadians(),
+                new TrapezoidProfile.State(goal.getRadians(), goalVelocity))
+                + m_pid.getSetpoint().velocity;
+        return omega / SwerveSystemConstants.maxAngularSpeed;
+    }
+}
@@ -0,0 +1,45 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.AsynchronousInterrupt;
+import edu.wpi.first.wpilibj.DigitalInput;
+
+/**
+ * Note sensor driven by an asynchronous interrupt on a digital input. Edges are timestamped by
+ * the FPGA, so the recorded acquire time does not depend on the robot loop.
+ */
+public class InterruptNoteSensor extends NoteSensor {
+    private final DigitalInput m_input;
+    private final boolean m_activeLow;
+    private final AsynchronousInterrupt m_interrupt;
+
+    /**
+     * Constructor.
+     */
+    public InterruptNoteSensor(DigitalInput input, boolean activeLow, double debounceSeconds) {
+        super(debounceSeconds);
+        m_input = input;
+        m_activeLow = activeLow;
+        m_interrupt = new AsynchronousInterrupt(m_input, this::onInterrupt);
+        m_interrupt.setInterruptEdges(true, true);
+        m_interrupt.enable();
+    }
+
+    private void onInterrupt(Boolean rising, Boolean falling) {
+        if (rising) {
+            handleEdge(!m_activeLow, m_interrupt.getRisingTimestamp());
+        }
+        if (falling) {
+            handleEdge(m_activeLow, m_interrupt.getFallingTimestamp());
+        }
+    }
+
+    @Override
+    protected boolean getRawNotePresent() {
+        return m_input.get() != m_activeLow;
+    }
+
+    @Override
+    public void close() {
+        m_interrupt.close();
+    }
+}
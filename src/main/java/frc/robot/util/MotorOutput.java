@@ -0,0 +1,115 @@
+package frc.robot.util;
+
+import com.revrobotics.CANSparkBase.ControlType;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.SparkPIDController;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.MotorOutputConstants;
+import java.util.ArrayList;
+
+/**
+ * Sends outputs to a SparkMax only when the value or control type changes, with a keep-alive
+ * resend so a setpoint is never left unrefreshed for long. Each write is a CAN frame, so repeated
+ * identical outputs from commands cost nothing. Sent and suppressed frames are counted per device
+ * and published under "CAN".
+ */
+public class MotorOutput {
+    private static final ArrayList<MotorOutput> s_outputs = new ArrayList<MotorOutput>();
+
+    private final String m_name;
+    private final CANSparkMax m_motor;
+    private SparkPIDController m_pidController;
+
+    private ControlType m_lastType;
+    private double m_lastValue = 0;
+    private double m_lastSendTime = 0;
+
+    private volatile long m_sent = 0;
+    private volatile long m_suppressed = 0;
+
+    /**
+     * Constructor.
+     */
+    public MotorOutput(String name, CANSparkMax motor) {
+        m_name = name;
+        m_motor = motor;
+        synchronized (s_outputs) {
+            s_outputs.add(this);
+        }
+    }
+
+    /**
+     * Percent output, from -1 to 1.
+     */
+    public void set(double speed) {
+        send(speed, ControlType.kDutyCycle);
+    }
+
+    public void setVoltage(double volts) {
+        send(volts, ControlType.kVoltage);
+    }
+
+    /**
+     * Closed-loop setpoint for the SparkMax onboard PID.
+     */
+    public void setReference(double value, ControlType type) {
+        send(value, type);
+    }
+
+    public void stopMotor() {
+        send(0, ControlType.kDutyCycle);
+    }
+
+    public long getSentCount() {
+        return m_sent;
+    }
+
+    public long getSuppressedCount() {
+        return m_suppressed;
+    }
+
+    private synchronized void send(double value, ControlType type) {
+        double now = Timer.getFPGATimestamp();
+        if (type == m_lastType
+                && Math.abs(value - m_lastValue) <= MotorOutputConstants.epsilon
+                && now - m_lastSendTime < MotorOutputConstants.keepAliveSeconds) {
+            m_suppressed++;
+            return;
+        }
+
+        if (type == ControlType.kDutyCycle) {
+            m_motor.set(value);
+        }
+        else {
+            if (m_pidController == null) {
+                m_pidController = m_motor.getPIDController();
+            }
+            m_pidController.setReference(value, type);
+        }
+        m_lastType = type;
+        m_lastValue = value;
+        m_lastSendTime = now;
+        m_sent++;
+    }
+
+    /**
+     * Publish the frame counts of every output. Call from the main robot loop.
+     */
+    public static void publishStats() {
+        long sent = 0;
+        long suppressed = 0;
+        synchronized (s_outputs) {
+            for (MotorOutput output : s_outputs) {
+                SmartDashboard.putNumber("CAN/" + output.m_name + " Sent", output.m_sent);
+                SmartDashboard.putNumber("CAN/" + output.m_name + " Suppressed",
+                        output.m_suppressed);
+                sent += output.m_sent;
+                suppressed += output.m_suppressed;
+            }
+        }
+        SmartDashboard.putNumber("CAN/Total Sent", sent);
+        SmartDashboard.putNumber("CAN/Total Suppressed", suppressed);
+    }
+}
@@ -0,0 +1,111 @@
+package frc.robot.util;
+
+import com.revrobotics.CANSparkMax;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.ThermalConstants;
+
+/**
+ * Estimates the winding temperature of a NEO from its current with a first-order thermal model,
+ * corrected towards the SparkMax temperature reading when one is available. From the estimate it
+ * predicts the time to the thermal limit at the present load and a derating fraction for the
+ * current limit, which falls gradually as the predicted temperature approaches the limit.
+ */
+public class MotorThermalModel {
+    private static final double windingResistance = DCMotor.getNEO(1).rOhms;
+
+    private final String m_name;
+    private final CANSparkMax m_motor;
+
+    private double m_temperature = ThermalConstants.ambientC;
+    private double m_filteredPower = 0;
+    private double m_lastTime = Double.NaN;
+    private double m_secondsToLimit = Double.POSITIVE_INFINITY;
+    private double m_derate = 1;
+    private boolean m_warning = false;
+
+    /**
+     * Constructor.
+     */
+    public MotorThermalModel(String name, CANSparkMax motor) {
+        m_name = name;
+        m_motor = motor;
+    }
+
+    /**
+     * Sample the motor and advance the estimate. Call once per robot loop.
+     */
+    public void update() {
+        double now = Timer.getFPGATimestamp();
+        double dt = Double.isNaN(m_lastTime) ? 0 : now - m_lastTime;
+        m_lastTime = now;
+
+        double current = m_motor.getOutputCurrent();
+        double power = current * current * windingResistance;
+        m_filteredPower += (power - m_filteredPower)
+                * Math.min(1, dt / ThermalConstants.powerFilterSeconds);
+
+        double timeConstant = ThermalConstants.thermalResistance * ThermalConstants.heatCapacity;
+        m_temperature += dt * (power / ThermalConstants.heatCapacity
+                - (m_temperature - ThermalConstants.ambientC) / timeConstant);
+
+        // The SparkMax reads zero when the motor has no temperature sensor, as in simulation.
+        double measured = m_motor.getMotorTemperature();
+        if (measured > 0) {
+            m_temperature += Math.min(1, dt * ThermalConstants.measurementGain)
+                    * (measured - m_temperature);
+        }
+
+        double steadyState = ThermalConstants.ambientC
+                + m_filteredPower * ThermalConstants.thermalResistance;
+        if (m_temperature >= ThermalConstants.limitC) {
+            m_secondsToLimit = 0;
+        }
+        else if (steadyState <= ThermalConstants.limitC) {
+            m_secondsToLimit = Double.POSITIVE_INFINITY;
+        }
+        else {
+            m_secondsToLimit = -timeConstant * Math.log(
+                    (steadyState - ThermalConstants.limitC) / (steadyState - m_temperature));
+        }
+
+        // Derate on where the temperature is heading, not only where it is.
+        double predicted = steadyState + (m_temperature - steadyState)
+                * Math.exp(-ThermalConstants.predictionHorizonSeconds / timeConstant);
+        double hottest = Math.max(m_temperature, predicted);
+        m_derate = MathUtil.interpolate(1, ThermalConstants.minDerate,
+                MathUtil.clamp((hottest - ThermalConstants.derateStartC)
+                        / (ThermalConstants.limitC - ThermalConstants.derateStartC), 0, 1));
+
+        boolean warning = m_secondsToLimit < ThermalConstants.warnSecondsToLimit;
+        if (warning && !m_warning) {
+            DriverStation.reportWarning(String.format("%s reaches its thermal limit in %.0f s",
+                    m_name, m_secondsToLimit), false);
+        }
+        m_warning = warning;
+
+        SmartDashboard.putNumber("Thermal/" + m_name + " Temp C", m_temperature);
+        SmartDashboard.putNumber("Thermal/" + m_name + " Seconds To Limit",
+                Math.min(m_secondsToLimit, ThermalConstants.maxReportedSeconds));
+        SmartDashboard.putBoolean("Thermal/" + m_name + " Warning", m_warning);
+    }
+
+    public double getTemperature() {
+        return m_temperature;
+    }
+
+    public double getSecondsToLimit() {
+        return m_secondsToLimit;
+    }
+
+    /**
+     * Fraction of the normal current limit this motor should run at, from 1 down to the minimum.
+     */
+    public double getDerate() {
+        return m_derate;
+    }
+}
@@ -0,0 +1,81 @@
+package frc.robot.util;
+
+/**
+ * Edge-driven note sensor. Subclasses report sensor edges with their timestamps and this class
+ * debounces them, tracks whether a note is held, and records when the last note was acquired.
+ */
+public abstract class NoteSensor implements AutoCloseable {
+    private final double m_debounceSeconds;
+    private double m_lastAcquireTimestamp = Double.NaN;
+    private int m_acquireCount = 0;
+    private boolean m_hasNote = false;
+    private double m_lastEdgeTimestamp = Double.NEGATIVE_INFINITY;
+    private Runnable m_onNoteAcquired = () -> {
+    };
+
+    protected NoteSensor(double debounceSeconds) {
+        m_debounceSeconds = debounceSeconds;
+    }
+
+    /**
+     * Raw, undebounced sensor state. True when the sensor currently sees a note.
+     */
+    protected abstract boolean getRawNotePresent();
+
+    /**
+     * Handle a sensor edge. Edges closer than the debounce time to the last accepted edge are
+     * treated as chatter and dropped.
+     */
+    protected synchronized void handleEdge(boolean notePresent, double timestampSeconds) {
+        if (notePresent == m_hasNote) {
+            return;
+        }
+        if (timestampSeconds - m_lastEdgeTimestamp < m_debounceSeconds) {
+            return;
+        }
+        m_hasNote = notePresent;
+        m_lastEdgeTimestamp = timestampSeconds;
+        if (notePresent) {
+            m_lastAcquireTimestamp = timestampSeconds;
+            m_acquireCount++;
+            m_onNoteAcquired.run();
+        }
+    }
+
+    /**
+     * Re-check the raw sensor state. Call this periodically so an edge dropped by the debounce
+     * cannot leave the sensor stuck in the wrong state.
+     */
+    public void update(double nowSeconds) {
+        handleEdge(getRawNotePresent(), nowSeconds);
+    }
+
+    /**
+     * Set the action to run, on the thread that saw the edge, when a note is acquired.
+     */
+    public synchronized void setOnNoteAcquired(Runnable onNoteAcquired) {
+        m_onNoteAcquired = onNoteAcquired;
+    }
+
+    public synchronized boolean hasNote() {
+        return m_hasNote;
+    }
+
+    /**
+     * Timestamp in seconds of the last note acquisition, or NaN if none has been seen.
+     */
+    public synchronized double getLastAcquireTimestamp() {
+        return m_lastAcquireTimestamp;
+    }
+
+    /**
+     * Number of notes acquired since the sensor was created.
+     */
+    public synchronized int getAcquireCount() {
+        return m_acquireCount;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,133 @@
+package frc.robot.util;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.VisionConstants.PipelineConstants;
+import frc.robot.LimelightHelpers;
+
+/**
+ * Switches the Limelight between pipelines and keeps track of when a switch has taken effect.
+ * A request is confirmed once the camera reports the new pipeline as current; until then, and
+ * for any frame captured before that moment, results are treated as invalid since they may come
+ * from the old pipeline. Frame rates are measured per pipeline from the camera heartbeat.
+ */
+public class PipelineManager {
+    /**
+     * The pipelines the robot uses.
+     */
+    public enum Pipeline {
+        LOCALIZATION(PipelineConstants.localizationPipeline),
+        AIMING(PipelineConstants.aimingPipeline);
+
+        public final int index;
+
+        Pipeline(int index) {
+            this.index = index;
+        }
+    }
+
+    private final String m_limelightName;
+    private final NetworkTableEntry m_heartbeat;
+
+    private Pipeline m_requested = Pipeline.LOCALIZATION;
+    private boolean m_settled = false;
+    private double m_requestTime = Double.NEGATIVE_INFINITY;
+    private double m_settledTime = Double.POSITIVE_INFINITY;
+
+    private final double[] m_fps = new double[Pipeline.values().length];
+    private double m_lastHeartbeat = Double.NaN;
+    private double m_fpsWindowStart = Double.NaN;
+    private int m_fpsFrames = 0;
+
+    /**
+     * Constructor.
+     */
+    public PipelineManager(String limelightName) {
+        m_limelightName = limelightName;
+        m_heartbeat = LimelightHelpers.getLimelightNTTableEntry(limelightName, "hb");
+    }
+
+    /**
+     * Ask the camera to switch to the given pipeline. Does nothing if it is already requested.
+     */
+    public void request(Pipeline pipeline) {
+        if (pipeline == m_requested && m_requestTime > Double.NEGATIVE_INFINITY) {
+            return;
+        }
+        m_requested = pipeline;
+        m_settled = false;
+        m_settledTime = Double.POSITIVE_INFINITY;
+        send();
+        restartFpsWindow();
+    }
+
+    /**
+     * Confirm pending switches and count frames. Call once per robot loop.
+     */
+    public void update() {
+        double now = Timer.getFPGATimestamp();
+        if (m_requestTime == Double.NEGATIVE_INFINITY) {
+            send();
+        }
+
+        if (!m_settled) {
+            if ((int) LimelightHelpers.getCurrentPipelineIndex(m_limelightName)
+                    == m_requested.index) {
+                m_settled = true;
+                m_settledTime = now;
+                restartFpsWindow();
+            }
+            else if (now - m_requestTime > PipelineConstants.switchTimeoutSeconds) {
+                send();
+            }
+        }
+
+        double heartbeat = m_heartbeat.getDouble(0);
+        if (m_settled && !Double.isNaN(m_lastHeartbeat) && heartbeat > m_lastHeartbeat) {
+            m_fpsFrames += (int) (heartbeat - m_lastHeartbeat);
+        }
+        m_lastHeartbeat = heartbeat;
+        if (m_settled && now - m_fpsWindowStart >= PipelineConstants.fpsWindowSeconds) {
+            m_fps[m_requested.ordinal()] = m_fpsFrames / (now - m_fpsWindowStart);
+            SmartDashboard.putNumber("Vision/" + m_requested + " FPS",
+                    m_fps[m_requested.ordinal()]);
+            restartFpsWindow();
+        }
+    }
+
+    public Pipeline getRequested() {
+        return m_requested;
+    }
+
+    /**
+     * Whether the camera is running the requested pipeline.
+     */
+    public boolean isSettled() {
+        return m_settled;
+    }
+
+    /**
+     * Whether a frame captured at the given FPGA time came from the requested pipeline.
+     */
+    public boolean isFrameValid(double captureTimestamp) {
+        return m_settled && captureTimestamp >= m_settledTime;
+    }
+
+    /**
+     * Frame rate last measured while running the given pipeline.
+     */
+    public double getFps(Pipeline pipeline) {
+        return m_fps[pipeline.ordinal()];
+    }
+
+    private void send() {
+        LimelightHelpers.setPipelineIndex(m_limelightName, m_requested.index);
+        m_requestTime = Timer.getFPGATimestamp();
+    }
+
+    private void restartFpsWindow() {
+        m_fpsWindowStart = Timer.getFPGATimestamp();
+        m_fpsFrames = 0;
+    }
+}
@@ -0,0 +1,163 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.filter.LinearFilter;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.PowerDistribution;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.PowerBudgetConstants;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shares a battery-dependent current budget between mechanisms. Every mechanism keeps its
+ * minimum limit; the rest goes to mechanisms that are commanded to move, in the order they were
+ * registered. With the mechanisms idle the drivetrain gets its full limit, and as the battery
+ * sags the budget shrinks so that lower-priority mechanisms are squeezed first, along with their
+ * voltage compensation target.
+ * Each mechanism's limit is further scaled by its thermal derating. The total current measured at
+ * the power distribution board closes the loop: once the actual draw nears the budget, the spare
+ * current handed out shrinks by the amount it is over, so mechanisms all running at once, or
+ * loads outside the budget, pull the limits down.
+ *
+ * <p>
+ * The budget is computed in the main loop, but the resulting SparkMax configuration writes block
+ * on the CAN bus, so they are handed to a writer thread. Only the latest limits for each mechanism
+ * are kept; a write that has not gone out yet is replaced rather than queued behind.
+ * </p>
+ */
+public class PowerBudget {
+    private static class Entry {
+        final String name;
+        final PowerConsumer consumer;
+        final int motorCount;
+        final int minAmps;
+        final int maxAmps;
+        final double compensationVolts;
+        int appliedAmps = -1;
+        double appliedVolts = -1;
+        // Limits waiting for the writer thread, as { amps, volts }.
+        final AtomicReference<double[]> pending = new AtomicReference<double[]>();
+
+        Entry(String name, PowerConsumer consumer, int motorCount, int minAmps, int maxAmps,
+                double compensationVolts) {
+            this.name = name;
+            this.consumer = consumer;
+            this.motorCount = motorCount;
+            this.minAmps = minAmps;
+            this.maxAmps = maxAmps;
+            this.compensationVolts = compensationVolts;
+        }
+    }
+
+    private final CopyOnWriteArrayList<Entry> m_entries = new CopyOnWriteArrayList<Entry>();
+    private final LinearFilter m_voltageFilter = LinearFilter.singlePoleIIR(
+            PowerBudgetConstants.voltageFilterSeconds, PowerBudgetConstants.updatePeriodSeconds);
+    private final LinearFilter m_currentFilter = LinearFilter.singlePoleIIR(
+            PowerBudgetConstants.currentFilterSeconds, PowerBudgetConstants.updatePeriodSeconds);
+    private final PowerDistribution m_powerDistribution = new PowerDistribution();
+    private double m_lastUpdate = Double.NEGATIVE_INFINITY;
+    private final Notifier m_writer = new Notifier(this::writePending);
+
+    /**
+     * Constructor.
+     */
+    public PowerBudget() {
+        m_writer.setName("PowerBudget");
+        m_writer.startPeriodic(PowerBudgetConstants.updatePeriodSeconds);
+    }
+
+    /**
+     * Register a mechanism. Earlier registrations get spare current first.
+     *
+     * @param name              name used for telemetry
+     * @param consumer          the mechanism
+     * @param motorCount        number of motors the per-motor limit applies to
+     * @param minAmps           per-motor limit the mechanism always keeps
+     * @param maxAmps           per-motor limit when the budget allows it
+     * @param compensationVolts voltage compensation target when not squeezed
+     */
+    public void register(String name, PowerConsumer consumer, int motorCount, int minAmps,
+            int maxAmps, double compensationVolts) {
+        m_entries.add(new Entry(name, consumer, motorCount, minAmps, maxAmps, compensationVolts));
+    }
+
+    /**
+     * Recompute the budget. Call every loop; the work is rate limited internally.
+     */
+    public void update() {
+        double now = Timer.getFPGATimestamp();
+        if (now - m_lastUpdate < PowerBudgetConstants.updatePeriodSeconds) {
+            return;
+        }
+        m_lastUpdate = now;
+
+        double voltage = m_voltageFilter.calculate(RobotController.getBatteryVoltage());
+        double charge = MathUtil.clamp(
+                (voltage - PowerBudgetConstants.brownoutGuardVoltage)
+                        / (PowerBudgetConstants.nominalVoltage
+                                - PowerBudgetConstants.brownoutGuardVoltage),
+                0, 1);
+        double budget = MathUtil.interpolate(
+                PowerBudgetConstants.minTotalCurrentAmps,
+                PowerBudgetConstants.maxTotalCurrentAmps,
+                charge);
+
+        double measured = m_currentFilter.calculate(m_powerDistribution.getTotalCurrent());
+        double overdraw = Math.max(0,
+                measured - budget * PowerBudgetConstants.measuredHeadroomFraction);
+
+        double remaining = budget - overdraw;
+        for (Entry entry : m_entries) {
+            remaining -= entry.minAmps * entry.motorCount;
+        }
+
+        for (Entry entry : m_entries) {
+            double allocated = entry.minAmps * entry.motorCount;
+            double squeeze = 1;
+            if (entry.consumer.isDemandingPower()) {
+                double wanted = (entry.maxAmps - entry.minAmps) * entry.motorCount;
+                double extra = MathUtil.clamp(remaining, 0, wanted);
+                allocated += extra;
+                remaining -= extra;
+                squeeze = allocated / (entry.maxAmps * entry.motorCount);
+            }
+            double derate = entry.consumer.getThermalDerate();
+            apply(entry, (int) (allocated / entry.motorCount * derate), Math.max(
+                    PowerBudgetConstants.minCompensationVolts,
+                    entry.compensationVolts * squeeze));
+        }
+
+        SmartDashboard.putNumber("Power/Battery Voltage", voltage);
+        SmartDashboard.putNumber("Power/Budget Amps", budget);
+        SmartDashboard.putNumber("Power/Measured Amps", measured);
+        SmartDashboard.putNumber("Power/Overdraw Amps", overdraw);
+    }
+
+    private void apply(Entry entry, int amps, double volts) {
+        if (Math.abs(amps - entry.appliedAmps) < PowerBudgetConstants.limitHysteresisAmps
+                && Math.abs(volts - entry.appliedVolts)
+                        < PowerBudgetConstants.compensationHysteresisVolts) {
+            return;
+        }
+        entry.pending.set(new double[] { amps, volts });
+        entry.appliedAmps = amps;
+        entry.appliedVolts = volts;
+        SmartDashboard.putNumber("Power/" + entry.name + " Limit Amps", amps);
+        SmartDashboard.putNumber("Power/" + entry.name + " Compensation Volts", volts);
+    }
+
+    /**
+     * Send the latest limits to the motors. Runs on the writer thread.
+     */
+    private void writePending() {
+        for (Entry entry : m_entries) {
+            double[] limits = entry.pending.getAndSet(null);
+            if (limits != null) {
+                entry.consumer.applyPowerBudget((int) limits[0], limits[1]);
+            }
+        }
+    }
+}
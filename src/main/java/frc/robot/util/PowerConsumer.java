@@ -0,0 +1,25 @@
+package frc.robot.util;
+
+/**
+ * A mechanism whose current limit and voltage compensation are set by {@link PowerBudget}.
+ */
+public interface PowerConsumer {
+    /**
+     * Whether the mechanism is currently commanded to move.
+     */
+    boolean isDemandingPower();
+
+    /**
+     * Apply a new per-motor smart current limit and voltage compensation target. Only called when
+     * either changes, and on the budget's writer thread rather than the main loop, since both are
+     * blocking SparkMax configuration writes.
+     */
+    void applyPowerBudget(int currentLimitAmps, double compensationVolts);
+
+    /**
+     * Fraction of the budgeted current limit the motors can take without overheating.
+     */
+    default double getThermalDerate() {
+        return 1;
+    }
+}
@@ -0,0 +1,25 @@
+package frc.robot.util;
+
+/**
+ * Note sensor for simulation and unit tests. Edges are injected with explicit timestamps.
+ */
+public class SimNoteSensor extends NoteSensor {
+    private boolean m_rawNotePresent = false;
+
+    public SimNoteSensor(double debounceSeconds) {
+        super(debounceSeconds);
+    }
+
+    /**
+     * Simulate the sensor changing state at the given time.
+     */
+    public void setNotePresent(boolean notePresent, double timestampSeconds) {
+        m_rawNotePresent = notePresent;
+        handleEdge(notePresent, timestampSeconds);
+    }
+
+    @Override
+    protected boolean getRawNotePresent() {
+        return m_rawNotePresent;
+    }
+}
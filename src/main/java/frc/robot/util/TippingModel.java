@@ -0,0 +1,38 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.MathUtil;
+import frc.robot.Constants.ArmConstants;
+import frc.robot.Constants.TippingConstants;
+
+/**
+ * Static tipping model of the robot. The robot tips when the inertial moment of its center of
+ * gravity about the leading wheels exceeds the gravity moment, that is when acceleration times
+ * CG height exceeds g times the horizontal distance from the CG to the wheel contact line.
+ */
+public final class TippingModel {
+    private static final double gravity = 9.81;
+
+    private TippingModel() {
+    }
+
+    /**
+     * Height of the combined center of gravity, given the height of the arm's shooter mass.
+     */
+    public static double getCenterOfGravityHeight(double armHeightMeters) {
+        double armHeight = MathUtil.clamp(armHeightMeters, 0,
+                ArmConstants.pivotHeightOverGround + ArmConstants.shootToPivotRadius);
+        return (TippingConstants.chassisMassKg * TippingConstants.chassisCgHeightMeters
+                + TippingConstants.armMassKg * armHeight)
+                / (TippingConstants.chassisMassKg + TippingConstants.armMassKg);
+    }
+
+    /**
+     * Largest horizontal acceleration, in meters per second squared, that keeps all wheels on the
+     * ground with the safety factor applied.
+     */
+    public static double getMaxAcceleration(double armHeightMeters) {
+        return TippingConstants.safetyFactor * gravity
+                * TippingConstants.wheelContactHalfWidthMeters
+                / getCenterOfGravityHeight(armHeightMeters);
+    }
+}
@@ -0,0 +1,100 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import java.util.Arrays;
+
+/**
+ * Detects swerve wheel slip by checking each module against the motion of the rest of the
+ * robot. Every module's measured velocity, minus its share of the gyro rotation, is an estimate
+ * of the chassis translation. The median of the other modules' estimates, plus this module's
+ * share of the rotation, is the speed this wheel should read. A wheel reading far from that is
+ * slipping.
+ *
+ * <p>
+ * Slip shared equally by every wheel, such as all four spinning up together, cannot be seen this
+ * way.
+ * </p>
+ */
+public class TractionMonitor {
+    private final Translation2d[] m_locations;
+    private final double m_slipSpeedThreshold;
+    private final double m_slipRatio;
+
+    private final double[] m_translationX;
+    private final double[] m_translationY;
+    private final double[] m_impliedSpeeds;
+    private final boolean[] m_slipping;
+
+    /**
+     * Constructor.
+     *
+     * @param slipSpeedThreshold smallest speed error, in meters per second, counted as slip
+     * @param slipRatio          speed error as a fraction of the implied speed counted as slip
+     * @param moduleLocations    module positions relative to the robot center
+     */
+    public TractionMonitor(double slipSpeedThreshold, double slipRatio,
+            Translation2d... moduleLocations) {
+        m_locations = moduleLocations;
+        m_slipSpeedThreshold = slipSpeedThreshold;
+        m_slipRatio = slipRatio;
+        m_translationX = new double[moduleLocations.length];
+        m_translationY = new double[moduleLocations.length];
+        m_impliedSpeeds = new double[moduleLocations.length];
+        m_slipping = new boolean[moduleLocations.length];
+    }
+
+    /**
+     * Check the measured module states, in the same order as the locations, against the robot's
+     * rotation rate in radians per second.
+     */
+    public void update(SwerveModuleState[] states, double omegaRadiansPerSecond) {
+        int count = m_locations.length;
+        for (int i = 0; i < count; i++) {
+            double cos = states[i].angle.getCos();
+            double sin = states[i].angle.getSin();
+            m_translationX[i] = states[i].speedMetersPerSecond * cos
+                    + omegaRadiansPerSecond * m_locations[i].getY();
+            m_translationY[i] = states[i].speedMetersPerSecond * sin
+                    - omegaRadiansPerSecond * m_locations[i].getX();
+        }
+
+        for (int i = 0; i < count; i++) {
+            double vx = medianExcluding(m_translationX, i)
+                    - omegaRadiansPerSecond * m_locations[i].getY();
+            double vy = medianExcluding(m_translationY, i)
+                    + omegaRadiansPerSecond * m_locations[i].getX();
+            m_impliedSpeeds[i] = vx * states[i].angle.getCos() + vy * states[i].angle.getSin();
+
+            double error = Math.abs(states[i].speedMetersPerSecond - m_impliedSpeeds[i]);
+            m_slipping[i] = error > Math.max(m_slipSpeedThreshold,
+                    m_slipRatio * Math.abs(m_impliedSpeeds[i]));
+        }
+    }
+
+    public boolean isSlipping(int module) {
+        return m_slipping[module];
+    }
+
+    /**
+     * Wheel speed along the module's heading implied by the other modules and the gyro.
+     */
+    public double getImpliedSpeed(int module) {
+        return m_impliedSpeeds[module];
+    }
+
+    private static double medianExcluding(double[] values, int excluded) {
+        double[] others = new double[values.length - 1];
+        int n = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i != excluded) {
+                others[n++] = values[i];
+            }
+        }
+        Arrays.sort(others);
+        if (n % 2 == 1) {
+            return others[n / 2];
+        }
+        return (others[n / 2 - 1] + others[n / 2]) / 2;
+    }
+}
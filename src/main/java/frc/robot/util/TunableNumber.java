@@ -0,0 +1,102 @@
+package frc.robot.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.wpi.first.networktables.GenericEntry;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.shuffleboard.BuiltInWidgets;
+import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.DoubleConsumer;
+
+/**
+ * A dashboard slider for a tuning value. The change callback only runs when the slider moves, on
+ * the NetworkTables listener thread, so an idle tunable costs nothing in the robot loop. Values
+ * are saved to the deploy directory and restored on the next boot.
+ */
+public class TunableNumber {
+    private static final File s_file = new File(Filesystem.getDeployDirectory(), "tuning.json");
+    private static final ObjectMapper s_mapper = new ObjectMapper();
+    private static Map<String, Double> s_saved;
+
+    private final String m_key;
+    private final double m_defaultValue;
+    private volatile double m_value;
+
+    /**
+     * Add a slider to the layout, starting at the saved value if there is one.
+     *
+     * @param layout       dashboard layout to add the slider to
+     * @param key          name of the slider and its key in the saved file
+     * @param defaultValue value used when nothing has been saved
+     * @param max          upper end of the slider
+     * @param onChange     called with the new value whenever it changes
+     */
+    public TunableNumber(ShuffleboardLayout layout, String key, double defaultValue, double max,
+            DoubleConsumer onChange) {
+        m_key = key;
+        m_defaultValue = defaultValue;
+        m_value = getSaved().getOrDefault(key, defaultValue);
+
+        GenericEntry entry = layout.add(key, m_value)
+                .withWidget(BuiltInWidgets.kNumberSlider)
+                .withProperties(Map.of("min", 0, "max", max))
+                .getEntry();
+        NetworkTableInstance.getDefault().addListener(entry,
+                EnumSet.of(NetworkTableEvent.Kind.kValueAll), event -> {
+                    double value = event.valueData.value.getDouble();
+                    if (value == m_value) {
+                        return;
+                    }
+                    m_value = value;
+                    save(m_key, value);
+                    onChange.accept(value);
+                });
+    }
+
+    public double get() {
+        return m_value;
+    }
+
+    /**
+     * Whether the value differs from the default, such as after restoring a saved value.
+     */
+    public boolean isChanged() {
+        return m_value != m_defaultValue;
+    }
+
+    private static synchronized Map<String, Double> getSaved() {
+        if (s_saved == null) {
+            s_saved = new TreeMap<String, Double>();
+            if (s_file.exists()) {
+                try {
+                    s_saved.putAll(s_mapper.readValue(s_file,
+                            new TypeReference<Map<String, Double>>() {
+                            }));
+                }
+                catch (IOException e) {
+                    DriverStation.reportWarning("Could not read " + s_file, false);
+                }
+            }
+        }
+        return s_saved;
+    }
+
+    private static synchronized void save(String key, double value) {
+        getSaved().put(key, value);
+        try {
+            s_mapper.writerWithDefaultPrettyPrinter().writeValue(s_file, s_saved);
+        }
+        catch (IOException e) {
+            DriverStation.reportWarning("Could not save " + s_file, false);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import java.util.ArrayList;
+
+/**
+ * Runs registered code paths repeatedly while the robot is disabled, so their classes are loaded
+ * and JIT compiled before the first enabled loop. Work is spread across loops within a time
+ * budget. The first and last iteration times of each task are published under "WarmUp" to show
+ * the effect of the warm-up.
+ */
+public class WarmUpService {
+    private final ArrayList<String> m_names = new ArrayList<String>();
+    private final ArrayList<Runnable> m_tasks = new ArrayList<Runnable>();
+    private final ArrayList<Integer> m_iterations = new ArrayList<Integer>();
+    private final ArrayList<Integer> m_done = new ArrayList<Integer>();
+    private final double m_loopBudgetSeconds;
+    private boolean m_complete = false;
+
+    public WarmUpService(double loopBudgetSeconds) {
+        m_loopBudgetSeconds = loopBudgetSeconds;
+    }
+
+    /**
+     * Register a code path to run the given number of times.
+     */
+    public void addTask(String name, int iterations, Runnable task) {
+        m_names.add(name);
+        m_iterations.add(iterations);
+        m_tasks.add(task);
+        m_done.add(0);
+    }
+
+    public boolean isComplete() {
+        return m_complete;
+    }
+
+    /**
+     * Run warm-up iterations until this loop's time budget is used. Call from disabledPeriodic.
+     */
+    public void run() {
+        if (m_complete) {
+            return;
+        }
+        long deadline = System.nanoTime() + (long) (m_loopBudgetSeconds * 1e9);
+        boolean anyRemaining = true;
+        while (anyRemaining && System.nanoTime() < deadline) {
+            anyRemaining = false;
+            for (int i = 0; i < m_tasks.size(); i++) {
+                int done = m_done.get(i);
+                if (done >= m_iterations.get(i)) {
+                    continue;
+                }
+                anyRemaining = true;
+
+                long start = System.nanoTime();
+                m_tasks.get(i).run();
+                double micros = (System.nanoTime() - start) / 1000.0;
+
+                if (done == 0) {
+                    SmartDashboard.putNumber("WarmUp/" + m_names.get(i) + " First us", micros);
+                }
+                else if (done == m_iterations.get(i) - 1) {
+                    SmartDashboard.putNumber("WarmUp/" + m_names.get(i) + " Last us", micros);
+                }
+                m_done.set(i, done + 1);
+            }
+        }
+        if (!anyRemaining) {
+            m_complete = true;
+        }
+        SmartDashboard.putBoolean("WarmUp/Complete", m_complete);
+    }
+}
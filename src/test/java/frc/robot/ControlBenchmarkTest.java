@@ -0,0 +1,236 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
+import frc.robot.Constants.ShooterConstants;
+import frc.robot.Constants.CommandsConstants.SetArmConstants;
+import frc.robot.Constants.CommandsConstants.SetAxisConstants;
+import frc.robot.Constants.CommandsConstants.VisionAutoAlignConstants;
+import frc.robot.commands.SetArmToAngleCommand;
+import frc.robot.commands.SetAxisCommand;
+import frc.robot.commands.VisionAutoAlignCommand;
+import frc.robot.subsystems.ArmSystem;
+import frc.robot.subsystems.ShooterSystem;
+import frc.robot.subsystems.SwerveDriveSystem;
+import frc.robot.util.Coords;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Closed-loop tracking benchmarks run in simulation. Every metric is "lower is better". Results
+ * are written to build/reports/control-benchmark.json and compared against the stored baseline.
+ *
+ * <p>
+ * Excluded from the normal test run; run through the controlBenchmark Gradle task, adding
+ * -PupdateControlBaseline to rewrite the baseline from the current results after an intended
+ * change in control performance.
+ * </p>
+ */
+@Tag("control-benchmark")
+class ControlBenchmarkTest {
+    private static final File reportFile = new File("build/reports/control-benchmark.json");
+    private static final File baselineFile = new File(
+            "src/test/resources/control-benchmark-baseline.json");
+    // A metric regresses when it is worse than the baseline by this fraction plus the slack.
+    private static final double relativeTolerance = 0.1;
+    private static final double absoluteSlack = 0.02;
+
+    private static final TreeMap<String, Double> results = new TreeMap<String, Double>();
+
+    private RobotContainer m_container;
+
+    @BeforeAll
+    static void clearResults() {
+        results.clear();
+    }
+
+    @BeforeEach
+    void setup() {
+        m_container = SimHarness.getContainer();
+        SimHarness.enable();
+        m_container.getSwerveDrive().resetPose(new Pose2d());
+    }
+
+    @Test
+    public void benchmarkPathFollowing() {
+        SwerveDriveSystem swerve = m_container.getSwerveDrive();
+        File[] pathFiles = new File(Filesystem.getDeployDirectory(), "pathplanner/paths")
+                .listFiles((dir, name) -> name.endsWith(".path"));
+        assertTrue(pathFiles != null && pathFiles.length > 0, "No deploy paths found");
+
+        for (File pathFile : pathFiles) {
+            String name = pathFile.getName().replace(".path", "");
+            PathPlannerPath path = PathPlannerPath.fromPathFile(name);
+            Pose2d startPose = path.getPreviewStartingHolonomicPose();
+            PathPlannerTrajectory trajectory = path
+                    .getTrajectory(new ChassisSpeeds(), startPose.getRotation());
+            swerve.resetPose(startPose);
+
+            Command follow = m_container.followPath(path);
+            ArrayList<Double> errors = new ArrayList<Double>();
+            double start = Timer.getFPGATimestamp();
+            SimHarness.setLoopHook(() -> {
+                Translation2d target = trajectory
+                        .sample(Timer.getFPGATimestamp() - start).positionMeters;
+                errors.add(target.getDistance(swerve.getPoseMeters().getTranslation()));
+            });
+            double elapsed = SimHarness.runUntilFinished(follow,
+                    trajectory.getTotalTimeSeconds() + 5);
+            SimHarness.setLoopHook(() -> {
+            });
+
+            double sumSquares = 0;
+            double max = 0;
+            for (double error : errors) {
+                sumSquares += error * error;
+                max = Math.max(max, error);
+            }
+            String key = "path." + name.replace(' ', '_');
+            results.put(key + ".rms_error_m", Math.sqrt(sumSquares / errors.size()));
+            results.put(key + ".max_error_m", max);
+            results.put(key + ".overrun_s", elapsed - trajectory.getTotalTimeSeconds());
+        }
+    }
+
+    @Test
+    public void benchmarkArmPresets() {
+        ArmSystem arm = m_container.getArmSystem();
+        // Points inside the arm's travel; the reported angle falls as the arm raises.
+        double travel = SetArmConstants.armMin - SetArmConstants.armMax;
+        Map<String, Double> presets = Map.of(
+                "mid", SetArmConstants.armMin - travel / 2,
+                "raised", SetArmConstants.armMin - travel * 3 / 4);
+
+        for (Map.Entry<String, Double> preset : presets.entrySet()) {
+            // Start each preset from the same place, resting on the lower limit.
+            SimHarness.runUntilFinished(new SetArmToAngleCommand(arm, SetArmConstants.armMin),
+                    SetArmConstants.maxTime);
+            double elapsed = SimHarness.runUntilFinished(
+                    new SetArmToAngleCommand(arm, preset.getValue()),
+                    SetArmConstants.maxTime + 1);
+            results.put("arm." + preset.getKey() + ".settle_s", elapsed);
+            results.put("arm." + preset.getKey() + ".final_error_rad",
+                    Math.abs(arm.getArmAngleRadians() - preset.getValue()));
+        }
+    }
+
+    @Test
+    public void benchmarkSetAxis() {
+        SwerveDriveSystem swerve = m_container.getSwerveDrive();
+        Coords target = new Coords(2, 1, 0);
+        Translation2d goal = new Translation2d(target.getX(), target.getY());
+        Translation2d approach = goal.minus(swerve.getPoseMeters().getTranslation());
+        double[] overshoot = {0};
+        // Distance travelled past the target along the approach direction.
+        SimHarness.setLoopHook(() -> {
+            Translation2d past = swerve.getPoseMeters().getTranslation().minus(goal);
+            overshoot[0] = Math.max(overshoot[0], (past.getX() * approach.getX()
+                    + past.getY() * approach.getY()) / approach.getNorm());
+        });
+
+        double elapsed = SimHarness.runUntilFinished(new SetAxisCommand(target, swerve),
+                SetAxisConstants.timeLimit + 1);
+        SimHarness.setLoopHook(() -> {
+        });
+
+        results.put("set_axis.time_to_target_s", elapsed);
+        results.put("set_axis.overshoot_m", overshoot[0]);
+        results.put("set_axis.final_error_m", swerve.getPoseMeters().getTranslation()
+                .getDistance(new Translation2d(target.getX(), target.getY())));
+    }
+
+    @Test
+    public void benchmarkVisionAutoAlign() {
+        SwerveDriveSystem swerve = m_container.getSwerveDrive();
+        // Tag 4 faces -X on the field layout, so the goal is straight back from it along X.
+        Translation2d tag = new Translation2d(8, 4);
+        swerve.resetPose(new Pose2d(4, 4.5, new Rotation2d()));
+        SimHarness.setLoopHook(() -> SimVision.update(swerve.getPoseMeters(), tag, 4));
+
+        double elapsed = SimHarness.runUntilFinished(
+                new VisionAutoAlignCommand(swerve, m_container.getVisionSystem()),
+                VisionAutoAlignConstants.timeLimit + 1);
+        SimHarness.setLoopHook(() -> {
+        });
+        SimVision.clear();
+
+        Translation2d goal = tag.minus(
+                new Translation2d(VisionAutoAlignConstants.targetDistanceMeters, 0));
+        results.put("vision_align.time_to_target_s", elapsed);
+        results.put("vision_align.final_error_m",
+                swerve.getPoseMeters().getTranslation().getDistance(goal));
+    }
+
+    @Test
+    public void benchmarkFlywheelSpinUp() {
+        ShooterSystem shooter = m_container.getShooterSystem();
+        shooter.stopSystem();
+        SimHarness.run(1);
+
+        double elapsed = SimHarness.runUntilFinished(
+                Commands.run(() -> shooter.setShootVelocity(ShooterConstants.shooterTargetRPM),
+                        shooter).until(shooter::isAtSpeed),
+                3);
+        results.put("shooter.spin_up_s", elapsed);
+    }
+
+    @AfterAll
+    static void compareWithBaseline() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        reportFile.getParentFile().mkdirs();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, results);
+
+        if (Boolean.getBoolean("controlBenchmark.update")) {
+            assertTrue(results.values().stream().noneMatch(Double::isNaN),
+                    "Not writing a baseline with NaN metrics: " + results);
+            mapper.writerWithDefaultPrettyPrinter().writeValue(baselineFile, results);
+            return;
+        }
+
+        TreeMap<String, Double> baseline = mapper.readValue(baselineFile,
+                new TypeReference<TreeMap<String, Double>>() {
+                });
+        ArrayList<String> regressions = new ArrayList<String>();
+        for (Map.Entry<String, Double> entry : baseline.entrySet()) {
+            Double current = results.get(entry.getKey());
+            if (current == null) {
+                regressions.add(entry.getKey() + ": not measured");
+                continue;
+            }
+            double allowed = entry.getValue() * (1 + relativeTolerance) + absoluteSlack;
+            // Written so that a NaN result or baseline counts as a regression.
+            if (!(current <= allowed)) {
+                regressions.add(entry.getKey() + ": " + current + " (baseline "
+                        + entry.getValue() + ")");
+            }
+        }
+        for (String key : results.keySet()) {
+            if (!baseline.containsKey(key)) {
+                regressions.add(key
+                        + ": no baseline, run controlBenchmark -PupdateControlBaseline");
+            }
+        }
+        assertTrue(regressions.isEmpty(), "Control regressions: " + regressions);
+    }
+}
@@ -0,0 +1,105 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pathplanner.lib.util.GeometryUtil;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.Constants.FieldConstants;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the deployed pathfinding grid against the pathfinding goal poses.
+ */
+class NavGridTest {
+    private static final File navGridFile = new File(
+            "src/main/deploy/pathplanner/navgrid.json");
+
+    private boolean[][] m_grid;
+    private double m_nodeSize;
+
+    @BeforeEach
+    void setup() throws IOException {
+        JsonNode json = new ObjectMapper().readTree(navGridFile);
+        m_nodeSize = json.get("nodeSizeMeters").asDouble();
+        JsonNode rows = json.get("grid");
+        m_grid = new boolean[rows.size()][];
+        for (int row = 0; row < rows.size(); row++) {
+            m_grid[row] = new boolean[rows.get(row).size()];
+            for (int col = 0; col < m_grid[row].length; col++) {
+                m_grid[row][col] = rows.get(row).get(col).asBoolean();
+            }
+        }
+    }
+
+    /**
+     * The pathfinding goals for both alliances, as bound in RobotContainer.
+     */
+    private static List<Pose2d> getGoals() {
+        List<Pose2d> blue = List.of(
+                new Pose2d(FieldConstants.ampX, FieldConstants.ampY,
+                        Rotation2d.fromDegrees(FieldConstants.ampRotationDegrees)),
+                new Pose2d(FieldConstants.speakerFrontX, FieldConstants.speakerY,
+                        Rotation2d.fromDegrees(FieldConstants.speakerFrontRotationDegrees)),
+                new Pose2d(FieldConstants.sourceX, FieldConstants.sourceY,
+                        Rotation2d.fromDegrees(FieldConstants.sourceRotationDegrees)));
+        List<Pose2d> goals = new ArrayList<Pose2d>(blue);
+        for (Pose2d pose : blue) {
+            goals.add(GeometryUtil.flipFieldPose(pose));
+        }
+        return goals;
+    }
+
+    private int[] getCell(Pose2d pose) {
+        return new int[] {
+                (int) (pose.getY() / m_nodeSize),
+                (int) (pose.getX() / m_nodeSize) };
+    }
+
+    @Test
+    public void testGoalsAreInFreeCells() {
+        for (Pose2d goal : getGoals()) {
+            int[] cell = getCell(goal);
+            assertFalse(m_grid[cell[0]][cell[1]], "goal " + goal + " is inside an obstacle");
+        }
+    }
+
+    @Test
+    public void testGoalsAreConnected() {
+        List<Pose2d> goals = getGoals();
+        int[] start = getCell(goals.get(0));
+        boolean[][] reached = new boolean[m_grid.length][m_grid[0].length];
+        ArrayDeque<int[]> queue = new ArrayDeque<int[]>();
+        reached[start[0]][start[1]] = true;
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int[] cell = queue.poll();
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    int row = cell[0] + dr;
+                    int col = cell[1] + dc;
+                    if (row >= 0 && row < m_grid.length && col >= 0 && col < m_grid[row].length
+                            && !m_grid[row][col] && !reached[row][col]) {
+                        reached[row][col] = true;
+                        queue.add(new int[] { row, col });
+                    }
+                }
+            }
+        }
+
+        for (Pose2d goal : goals) {
+            int[] cell = getCell(goal);
+            assertTrue(reached[cell[0]][cell[1]], "goal " + goal + " cannot be reached");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.CommandsConstants.SetArmConstants;
+import frc.robot.Constants.CommandsConstants.SetAxisConstants;
+import frc.robot.commands.SetArmToAngleCommand;
+import frc.robot.commands.SetAxisCommand;
+import frc.robot.subsystems.ArmSystem;
+import frc.robot.subsystems.SwerveDriveSystem;
+import frc.robot.util.Coords;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RobotSimTest {
+    private RobotContainer m_container;
+
+    @BeforeEach
+    void setup() {
+        m_container = SimHarness.getContainer();
+        SimHarness.enable();
+        m_container.getSwerveDrive().resetPose(new Pose2d());
+    }
+
+    @Test
+    public void testSetArmToAngle() {
+        ArmSystem arm = m_container.getArmSystem();
+        double target = (SetArmConstants.armMin + SetArmConstants.armMax) / 2;
+
+        double elapsed = SimHarness.runUntilFinished(
+                new SetArmToAngleCommand(arm, target),
+                SetArmConstants.maxTime + 1);
+
+        assertTrue(elapsed < SetArmConstants.maxTime, "Arm timed out after " + elapsed);
+        assertEquals(target, arm.getArmAngleRadians(), 2 * SetArmConstants.errorMargin);
+    }
+
+    @Test
+    public void testSetAxis() {
+        SwerveDriveSystem swerve = m_container.getSwerveDrive();
+
+        double elapsed = SimHarness.runUntilFinished(
+                new SetAxisCommand(new Coords(1, 0.5, 0), swerve),
+                SetAxisConstants.timeLimit + 1);
+
+        assertTrue(elapsed < SetAxisConstants.timeLimit, "Drive timed out after " + elapsed);
+        assertEquals(1, swerve.getxPosition(), 2 * SetAxisConstants.errorMarginXY);
+        assertEquals(0.5, swerve.getyPosition(), 2 * SetAxisConstants.errorMarginXY);
+    }
+
+    @Test
+    public void testAutonomousPath() {
+        SwerveDriveSystem swerve = m_container.getSwerveDrive();
+        Translation2d start = new Translation2d(2, 7);
+        Translation2d end = new Translation2d(5, 5);
+        swerve.resetPose(new Pose2d(start, new Rotation2d()));
+
+        Command auto = m_container.getAutonomousCommand();
+        double elapsed = SimHarness.runUntilFinished(auto, 15);
+
+        assertTrue(elapsed < 15, "Auto timed out after " + elapsed);
+        double remaining = swerve.getPoseMeters().getTranslation().getDistance(end);
+        assertTrue(remaining < start.getDistance(end) / 2,
+                "Auto ended " + remaining + " m from the end of the path");
+    }
+}
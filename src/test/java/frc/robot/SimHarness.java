@@ -0,0 +1,95 @@
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants.SimConstants;
+
+/**
+ * Headless simulation harness. Boots one RobotContainer against the simulated hardware and steps
+ * the HAL clock directly, so commands run much faster than real time.
+ *
+ * <p>
+ * Hardware handles and Shuffleboard titles can only be claimed once per process, so every test
+ * shares the same container.
+ * </p>
+ */
+public final class SimHarness {
+    private static RobotContainer s_container;
+    private static Runnable s_loopHook = () -> {
+    };
+
+    private SimHarness() {
+    }
+
+    /**
+     * Returns the shared container, starting the HAL with its clock paused on first use.
+     */
+    public static synchronized RobotContainer getContainer() {
+        if (s_container == null) {
+            HAL.initialize(500, 0);
+            SimHooks.pauseTiming();
+            s_container = new RobotContainer();
+            // The container lives for the whole test run, so its sampling threads are closed
+            // when the test JVM exits.
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(s_container.getIntakeSystem()::close));
+        }
+        return s_container;
+    }
+
+    /**
+     * Enable the simulated robot in teleop and clear any scheduled commands.
+     */
+    public static void enable() {
+        CommandScheduler.getInstance().cancelAll();
+        s_loopHook = () -> {
+        };
+        DriverStationSim.setAutonomous(false);
+        DriverStationSim.setEnabled(true);
+        DriverStationSim.notifyNewData();
+    }
+
+    /**
+     * Set an action to run at the start of every loop, such as publishing simulated sensor data.
+     */
+    public static void setLoopHook(Runnable loopHook) {
+        s_loopHook = loopHook;
+    }
+
+    /**
+     * Run the scheduler and step the clock by one robot loop.
+     */
+    public static void stepLoop() {
+        s_loopHook.run();
+        CommandScheduler.getInstance().run();
+        SimHooks.stepTiming(SimConstants.loopPeriodSeconds);
+    }
+
+    /**
+     * Run the robot for the given simulated time.
+     */
+    public static void run(double seconds) {
+        double end = Timer.getFPGATimestamp() + seconds;
+        while (Timer.getFPGATimestamp() < end) {
+            stepLoop();
+        }
+    }
+
+    /**
+     * Schedule the command and step until it finishes or the timeout passes. Returns the
+     * simulated time the command ran for.
+     */
+    public static double runUntilFinished(Command command, double timeoutSeconds) {
+        double start = Timer.getFPGATimestamp();
+        command.schedule();
+        stepLoop();
+        while (command.isScheduled() && Timer.getFPGATimestamp() - start < timeoutSeconds) {
+            stepLoop();
+        }
+        return Timer.getFPGATimestamp() - start;
+    }
+}
@@ -0,0 +1,58 @@
+package frc.robot;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * Publishes the Limelight values the robot would see of a single AprilTag, computed from the
+ * simulated robot pose. The camera is taken to look along the robot's +X axis.
+ */
+public final class SimVision {
+    private static final NetworkTable table = NetworkTableInstance.getDefault()
+            .getTable(VisionConstants.limelightName);
+    private static double s_heartbeat = 0;
+
+    private SimVision() {
+    }
+
+    /**
+     * Publish tx, ty, ta and tid for a tag at the given field position, as a new frame.
+     */
+    public static void update(Pose2d robotPose, Translation2d tagPosition, int tagId) {
+        // The simulated camera switches pipelines as soon as it is asked to.
+        table.getEntry("getpipe").setDouble(table.getEntry("pipeline").getDouble(0));
+
+        Translation2d toTag = tagPosition.minus(robotPose.getTranslation())
+                .rotateBy(robotPose.getRotation().unaryMinus());
+        double forward = toTag.getX();
+        if (forward <= 0) {
+            clear();
+            return;
+        }
+
+        // Limelight tx is positive when the target is to the right of the crosshair.
+        double tx = -Math.toDegrees(Math.atan2(toTag.getY(), forward));
+        double ty = Math.toDegrees(Math.atan2(
+                VisionConstants.aprilTagHeightMeters - VisionConstants.limelightLensHeightMeters,
+                forward));
+        table.getEntry("tx").setDouble(tx);
+        table.getEntry("ty").setDouble(ty);
+        table.getEntry("ta").setDouble(1);
+        table.getEntry("tid").setDouble(tagId);
+        table.getEntry("hb").setDouble(++s_heartbeat);
+    }
+
+    /**
+     * Publish no target.
+     */
+    public static void clear() {
+        table.getEntry("tx").setDouble(0);
+        table.getEntry("ty").setDouble(0);
+        table.getEntry("ta").setDouble(0);
+        table.getEntry("tid").setDouble(-1);
+        table.getEntry("hb").setDouble(++s_heartbeat);
+    }
+}
@@ -0,0 +1,52 @@
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CurrentNoteDetectorTest {
+    private static final double period = 0.005;
+    private static final int confirmSamples = 6;
+    private CurrentNoteDetector m_detector;
+    private double m_time;
+
+    @BeforeEach
+    void setup() {
+        m_detector = new CurrentNoteDetector(8, 0.2, 0.25, confirmSamples, 0.05);
+        m_time = 0;
+        // Spin the rollers up and settle the baseline.
+        run(10, 5000, 0.5);
+    }
+
+    private void run(double current, double velocity, double seconds) {
+        double end = m_time + seconds - period / 2;
+        while (m_time < end) {
+            m_detector.update(current, velocity, true, m_time);
+            m_time += period;
+        }
+    }
+
+    @Test
+    public void testNoteLatchesWithoutOtherSensor() {
+        run(25, 3000, confirmSamples * period);
+        assertTrue(m_detector.isNoteDetected());
+
+        run(10, 5000, 1);
+        assertTrue(m_detector.isNoteDetected());
+    }
+
+    @Test
+    public void testBriefSpikeIgnored() {
+        run(25, 3000, (confirmSamples - 2) * period);
+        run(10, 5000, 0.1);
+        assertFalse(m_detector.isNoteDetected());
+    }
+
+    @Test
+    public void testSpikeWithoutSlowdownIgnored() {
+        run(25, 5000, 0.2);
+        assertFalse(m_detector.isNoteDetected());
+    }
+}
@@ -0,0 +1,64 @@
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NoteSensorTest {
+    private static final double debounce = 0.02;
+    private SimNoteSensor m_sensor;
+    private int m_acquireCount;
+
+    @BeforeEach
+    void setup() {
+        m_sensor = new SimNoteSensor(debounce);
+        m_acquireCount = 0;
+        m_sensor.setOnNoteAcquired(() -> m_acquireCount++);
+    }
+
+    @Test
+    public void testAcquireRecordsTimestamp() {
+        assertFalse(m_sensor.hasNote());
+        assertTrue(Double.isNaN(m_sensor.getLastAcquireTimestamp()));
+
+        m_sensor.setNotePresent(true, 1.0);
+
+        assertTrue(m_sensor.hasNote());
+        assertEquals(1.0, m_sensor.getLastAcquireTimestamp());
+        assertEquals(1, m_acquireCount);
+    }
+
+    @Test
+    public void testChatterIsDebounced() {
+        m_sensor.setNotePresent(true, 1.0);
+        m_sensor.setNotePresent(false, 1.005);
+        m_sensor.setNotePresent(true, 1.010);
+
+        assertTrue(m_sensor.hasNote());
+        assertEquals(1, m_acquireCount);
+        assertEquals(1, m_sensor.getAcquireCount());
+    }
+
+    @Test
+    public void testUpdateRecoversDroppedEdge() {
+        m_sensor.setNotePresent(true, 1.0);
+        m_sensor.setNotePresent(false, 1.005);
+        assertTrue(m_sensor.hasNote());
+
+        m_sensor.update(1.1);
+        assertFalse(m_sensor.hasNote());
+    }
+
+    @Test
+    public void testSecondNoteRecorded() {
+        m_sensor.setNotePresent(true, 1.0);
+        m_sensor.setNotePresent(false, 2.0);
+        m_sensor.setNotePresent(true, 3.0);
+
+        assertEquals(2, m_acquireCount);
+        assertEquals(3.0, m_sensor.getLastAcquireTimestamp());
+    }
+}
@@ -0,0 +1,31 @@
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import frc.robot.Constants.CommandsConstants.SetArmConstants;
+import frc.robot.Constants.TippingConstants;
+import frc.robot.subsystems.ArmSystem;
+import org.junit.jupiter.api.Test;
+
+class TippingModelTest {
+    @Test
+    public void testRaisedArmLowersMaxAcceleration() {
+        double stowed = TippingModel.getMaxAcceleration(
+                ArmSystem.getArmHeight(SetArmConstants.armMin));
+        double raised = TippingModel.getMaxAcceleration(
+                ArmSystem.getArmHeight(SetArmConstants.armMax));
+
+        assertTrue(raised < stowed, "raised " + raised + " stowed " + stowed);
+        assertTrue(raised < TippingConstants.unlimitedAccelerationMetersPerSecondSquared,
+                "the limiter must engage with the arm raised, got " + raised);
+    }
+
+    @Test
+    public void testArmHeightStaysAboveGroundOverTravel() {
+        for (double angle = SetArmConstants.armMax; angle <= SetArmConstants.armMin;
+                angle += 0.05) {
+            double height = ArmSystem.getArmHeight(angle);
+            assertTrue(height > 0, "height " + height + " at angle " + angle);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package frc.robot.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TractionMonitorTest {
+    private static final Translation2d[] locations = {
+            new Translation2d(0.3, 0.3),
+            new Translation2d(0.3, -0.3),
+            new Translation2d(-0.3, 0.3),
+            new Translation2d(-0.3, -0.3) };
+    private final SwerveDriveKinematics m_kinematics = new SwerveDriveKinematics(locations);
+    private TractionMonitor m_monitor;
+
+    @BeforeEach
+    void setup() {
+        m_monitor = new TractionMonitor(0.3, 0.25, locations);
+    }
+
+    @Test
+    public void testConsistentMotionDoesNotSlip() {
+        ChassisSpeeds speeds = new ChassisSpeeds(1.5, -0.5, 2);
+        m_monitor.update(m_kinematics.toSwerveModuleStates(speeds), 2);
+
+        SwerveModuleState[] states = m_kinematics.toSwerveModuleStates(speeds);
+        for (int i = 0; i < locations.length; i++) {
+            assertFalse(m_monitor.isSlipping(i));
+            assertEquals(states[i].speedMetersPerSecond, m_monitor.getImpliedSpeed(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void testSpinningWheelSlips() {
+        SwerveModuleState[] states = m_kinematics.toSwerveModuleStates(new ChassisSpeeds(1, 0, 0));
+        states[2] = new SwerveModuleState(3, new Rotation2d());
+        m_monitor.update(states, 0);
+
+        assertTrue(m_monitor.isSlipping(2));
+        assertEquals(1, m_monitor.getImpliedSpeed(2), 1e-9);
+        assertFalse(m_monitor.isSlipping(0));
+        assertFalse(m_monitor.isSlipping(1));
+        assertFalse(m_monitor.isSlipping(3));
+    }
+}
@@ -0,0 +1,35 @@
+package frc.robot.util;
+
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.PathPlannerTrajectory;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.robot.Constants.TrajectoryConstants;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Build-time generator for {@link CompiledTrajectory} files, run through the compileTrajectories
+ * Gradle task. Excluded from the normal test run.
+ */
+@Tag("trajectory-compiler")
+class TrajectoryCompilerTask {
+    /**
+     * Compile every deploy path, starting from rest at the path's starting pose.
+     */
+    @Test
+    public void compileTrajectories() throws Exception {
+        HAL.initialize(500, 0);
+        for (String name : AutoRegistry.listPathNames()) {
+            PathPlannerPath path = PathPlannerPath.fromPathFile(name);
+            PathPlannerTrajectory trajectory = path.getTrajectory(new ChassisSpeeds(),
+                    path.getPreviewStartingHolonomicPose().getRotation());
+            CompiledTrajectory.write(
+                    trajectory,
+                    CompiledTrajectory.checksum(CompiledTrajectory.getPathFile(name)),
+                    TrajectoryConstants.compiledSamplePeriodSeconds,
+                    CompiledTrajectory.getCompiledFile(name));
+        }
+    }
+}